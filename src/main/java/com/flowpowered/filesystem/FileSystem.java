@@ -23,10 +23,12 @@
  */
 package com.flowpowered.filesystem;
 
+import com.flowpowered.filesystem.decoder.ResourceDecoder;
 import com.flowpowered.filesystem.resolver.ResourcePathResolver;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
 import java.util.List;
 import java.util.Set;
 
@@ -54,6 +56,21 @@ public interface FileSystem {
      */
     public void registerLoader(ResourceLoader loader);
 
+    /**
+     * Returns a list of all registered decoders, in the order they are tried.
+     *
+     * @return all decoders
+     */
+    public List<ResourceDecoder> getDecoders();
+
+    /**
+     * Registers the specified decoder. A resource that cannot be found is also looked up with the decoder's extension appended to its path, and is decoded before being passed to its
+     * {@link ResourceLoader} if it starts with the decoder's magic bytes. Resources found at the requested path are passed on as they are.
+     *
+     * @param decoder to register
+     */
+    public void registerDecoder(ResourceDecoder decoder);
+
     /**
      * Returns an {@link InputStream} of a resource at the specified {@link URI}.
      *
@@ -72,6 +89,46 @@ public interface FileSystem {
      */
     public InputStream getResourceStream(String uri) throws ResourceNotFoundException;
 
+    /**
+     * Returns an {@link InputStream} over a range of the resource at the specified {@link URI}. The stream ends after {@code length} bytes or at the end of the resource, whichever comes first.
+     *
+     * @param uri to get stream from
+     * @param offset of the first byte to read
+     * @param length maximum number of bytes to read
+     * @return input stream
+     * @throws ResourceNotFoundException if there is no resource at specified path
+     */
+    public InputStream getResourceStream(URI uri, long offset, long length) throws ResourceNotFoundException;
+
+    /**
+     * Returns an {@link InputStream} over a range of the resource at the specified {@link URI}. The stream ends after {@code length} bytes or at the end of the resource, whichever comes first.
+     *
+     * @param uri to get stream from
+     * @param offset of the first byte to read
+     * @param length maximum number of bytes to read
+     * @return input stream
+     * @throws ResourceNotFoundException if there is no resource at specified path
+     */
+    public InputStream getResourceStream(String uri, long offset, long length) throws ResourceNotFoundException;
+
+    /**
+     * Returns a read-only {@link SeekableByteChannel} of the resource at the specified {@link URI}, for random access within the resource.
+     *
+     * @param uri to get channel from
+     * @return channel
+     * @throws ResourceNotFoundException if there is no resource at specified path
+     */
+    public SeekableByteChannel getResourceChannel(URI uri) throws ResourceNotFoundException;
+
+    /**
+     * Returns a read-only {@link SeekableByteChannel} of the resource at the specified {@link URI}, for random access within the resource.
+     *
+     * @param uri to get channel from
+     * @return channel
+     * @throws ResourceNotFoundException if there is no resource at specified path
+     */
+    public SeekableByteChannel getResourceChannel(String uri) throws ResourceNotFoundException;
+
     /**
      * Adds the resource at the specified location to the system's resource cache.
      *
@@ -94,6 +151,29 @@ public interface FileSystem {
      */
     public Object loadResource(String uri) throws LoaderNotFoundException, ResourceNotFoundException, IOException;
 
+    /**
+     * Removes the resource at the specified location from the system's resource cache. If the resource is an {@link OffHeapResource}, the cache's reference to it is released, and its memory is freed once all its leases are closed.
+     *
+     * @param uri of the resource to unload
+     * @return true if a resource was unloaded
+     */
+    public boolean unloadResource(URI uri);
+
+    /**
+     * Removes the resource at the specified location from the system's resource cache. If the resource is an {@link OffHeapResource}, the cache's reference to it is released, and its memory is freed once all its leases are closed.
+     *
+     * @param uri of the resource to unload
+     * @return true if a resource was unloaded
+     */
+    public boolean unloadResource(String uri);
+
+    /**
+     * Returns the amount of direct memory held by the {@link OffHeapResource}s currently in the system's resource cache.
+     *
+     * @return off-heap memory usage in bytes
+     */
+    public long getOffHeapMemoryUsage();
+
     /**
      * Returns the resource at the specified path with an inferred type. If this resource is not loaded when this is called, it will be automatically loaded and cached before returning the resource. This
      * call assumes that the inferred return type is actually the correct type of the resource loader's return type. If the resource is not found in the specified path, this call will then attempt to
@@ -117,7 +197,29 @@ public interface FileSystem {
     public <R> R getResource(String uri);
 
     /**
-     * Returns a list of all the resources in the specified directory.
+     * Returns a lease on the {@link OffHeapResource} at the specified path, loading it like {@link #getResource(java.net.URI)} if needed. Unlike the resource returned by
+     * {@link #getResource(java.net.URI)}, the leased memory stays valid even if the resource is unloaded or evicted concurrently, until the lease is closed.
+     *
+     * @param uri to get resource from
+     * @return lease on the resource, to close once done with it
+     * @throws IllegalArgumentException if the resource at path is not an {@link OffHeapResource}
+     */
+    public OffHeapResource.Lease acquireResource(URI uri);
+
+    /**
+     * Returns a lease on the {@link OffHeapResource} at the specified path, loading it like {@link #getResource(java.net.URI)} if needed. Unlike the resource returned by
+     * {@link #getResource(java.net.URI)}, the leased memory stays valid even if the resource is unloaded or evicted concurrently, until the lease is closed.
+     *
+     * @param uri to get resource from
+     * @return lease on the resource, to close once done with it
+     * @throws IllegalArgumentException if the resource at path is not an {@link OffHeapResource}
+     */
+    public OffHeapResource.Lease acquireResource(String uri);
+
+    /**
+     * Returns a list of all the resources in the specified directory. The resources stay owned by the system's resource cache: like those returned by {@link #getResource(java.net.URI)},
+     * {@link OffHeapResource}s may be unloaded and released as soon as other resources are loaded, this call included when the cache cannot hold the whole directory. Use
+     * {@link #acquireResources(java.net.URI)} to read them safely.
      *
      * @param uri to get resources from
      * @param <R> type of resources
@@ -127,7 +229,9 @@ public interface FileSystem {
     public <R> List<R> getResources(URI uri);
 
     /**
-     * Returns a list of all the resources in the specified directory.
+     * Returns a list of all the resources in the specified directory. The resources stay owned by the system's resource cache: like those returned by {@link #getResource(java.net.URI)},
+     * {@link OffHeapResource}s may be unloaded and released as soon as other resources are loaded, this call included when the cache cannot hold the whole directory. Use
+     * {@link #acquireResources(java.net.URI)} to read them safely.
      *
      * @param uri to get resources from
      * @param <R> type of resources
@@ -136,6 +240,26 @@ public interface FileSystem {
      */
     public <R> List<R> getResources(String uri);
 
+    /**
+     * Returns a lease on each of the {@link OffHeapResource}s in the specified directory, loading them like {@link #getResources(java.net.URI)}. Each lease is owned by the caller and keeps its
+     * resource's memory valid until it is closed, even if the resource is unloaded from the cache in the meantime, e.g. to make room for the rest of the directory.
+     *
+     * @param uri to get resources from
+     * @return leases on the resources, to close once done with them
+     * @throws IllegalArgumentException if one of the resources is not an {@link OffHeapResource}
+     */
+    public List<OffHeapResource.Lease> acquireResources(URI uri);
+
+    /**
+     * Returns a lease on each of the {@link OffHeapResource}s in the specified directory, loading them like {@link #getResources(java.net.URI)}. Each lease is owned by the caller and keeps its
+     * resource's memory valid until it is closed, even if the resource is unloaded from the cache in the meantime, e.g. to make room for the rest of the directory.
+     *
+     * @param uri to get resources from
+     * @return leases on the resources, to close once done with them
+     * @throws IllegalArgumentException if one of the resources is not an {@link OffHeapResource}
+     */
+    public List<OffHeapResource.Lease> acquireResources(String uri);
+
     /**
      * Returns a list of all {@link ResourcePathResolver}s that are currently on the system. These resolvers handle the {@link URI}s passed to {@link #getResource(java.net.URI)} to find a suitable input
      * stream for the resource.
@@ -152,7 +276,8 @@ public interface FileSystem {
     public void addPathResolver(ResourcePathResolver pathResolver);
 
     /**
-     * Removes the path resolver to be queried when attempting to find a suitable input stream for a specified {@link URI} in {@link #getResource(java.net.URI)}
+     * Removes the path resolver to be queried when attempting to find a suitable input stream for a specified {@link URI} in {@link #getResource(java.net.URI)}. Loads already in progress may
+     * still use it. Resolvers holding resources, like {@link com.flowpowered.filesystem.resolver.ZipFilePathResolver}, are not closed; closing them is left to the caller.
      *
      * @param pathResolver to remove
      */
@@ -0,0 +1,251 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A resource whose contents live in direct memory, outside of the Java heap. {@link ResourceLoader}s producing large binary payloads (audio buffers, voxel data...) can return one of these (or a subclass)
+ * from {@link ResourceLoader#load(java.io.InputStream)}; the {@link FileSystem} then accounts for its size and releases the memory when the resource is unloaded or evicted, instead of waiting for the
+ * garbage collector.
+ * <p>
+ * The memory is reference counted. The owner of the resource (the {@link FileSystem} while it is cached) holds one reference, dropped by {@link #release()}, and every {@link Lease} obtained through
+ * {@link #acquire()} holds another one. The memory is freed once the last reference is dropped, so evicting a resource never frees memory that is still being read. Resources cached by a
+ * {@link FileSystem} should be read through {@link FileSystem#acquireResource(java.net.URI)}, which cannot race with their eviction.
+ */
+public class OffHeapResource {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapResource.class);
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+    private final ByteBuffer buffer;
+    private final AtomicBoolean ownerReleased = new AtomicBoolean(false);
+    // the owner's reference plus one per open lease
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * Wraps an already allocated direct buffer. The resource takes ownership of the buffer; it is freed once the resource and all its leases are released.
+     *
+     * @param buffer direct buffer to wrap
+     */
+    protected OffHeapResource(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Off-heap resources require a direct buffer.");
+        }
+        this.buffer = buffer;
+    }
+
+    /**
+     * Allocates a new off-heap resource of the specified size.
+     *
+     * @param capacity in bytes
+     * @return the allocated resource
+     */
+    public static OffHeapResource allocate(int capacity) {
+        return new OffHeapResource(ByteBuffer.allocateDirect(capacity));
+    }
+
+    /**
+     * Reads the specified stream to its end into a new off-heap resource, sized to the content. The returned buffer is flipped, ready to be read.
+     *
+     * @param in input stream to read
+     * @return the loaded resource
+     * @throws IOException if there was a problem reading the stream
+     */
+    public static OffHeapResource read(InputStream in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_CHUNK_SIZE);
+        byte[] chunk = new byte[READ_CHUNK_SIZE];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            if (buffer.remaining() < read) {
+                // grow by doubling, freeing the old buffer right away
+                ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + read));
+                buffer.flip();
+                grown.put(buffer);
+                free(buffer);
+                buffer = grown;
+            }
+            buffer.put(chunk, 0, read);
+        }
+        buffer.flip();
+        if (buffer.limit() < buffer.capacity()) {
+            // the size is what gets accounted for, don't hold on to the slack of the growth
+            ByteBuffer exact = ByteBuffer.allocateDirect(buffer.limit());
+            exact.put(buffer);
+            exact.flip();
+            free(buffer);
+            buffer = exact;
+        }
+        return new OffHeapResource(buffer);
+    }
+
+    /**
+     * Acquires a lease on the resource's memory, which stays allocated at least until the lease is closed.
+     *
+     * @return lease to close once done with the memory
+     * @throws IllegalStateException if the memory has already been freed
+     */
+    public Lease acquire() {
+        Lease lease = tryAcquire();
+        if (lease == null) {
+            throw new IllegalStateException("Off-heap resource has already been released.");
+        }
+        return lease;
+    }
+
+    /**
+     * Acquires a lease on the resource's memory, unless it has already been freed.
+     *
+     * @return lease to close once done with the memory, or null if the memory has been freed
+     */
+    Lease tryAcquire() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return null;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return new Lease();
+    }
+
+    /**
+     * Returns the amount of direct memory held by this resource, in bytes.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns true if the memory of this resource has been freed, i.e. the resource and all its leases have been released.
+     *
+     * @return true if released
+     */
+    public boolean isReleased() {
+        return references.get() == 0;
+    }
+
+    /**
+     * Drops the owner's reference to this resource. The memory is freed right away if no lease is open, otherwise when the last lease is closed. Calling this more than once has no effect.
+     * <p>
+     * This is meant for the owner only: a resource cached by a {@link FileSystem} is owned by it, and is released through {@link FileSystem#unloadResource(java.net.URI)} instead.
+     */
+    public void release() {
+        if (ownerReleased.compareAndSet(false, true)) {
+            dropReference();
+        }
+    }
+
+    private void dropReference() {
+        if (references.decrementAndGet() == 0) {
+            free(buffer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapResource(" + getSize() + " bytes" + (isReleased() ? ", released" : "") + ")";
+    }
+
+    /**
+     * A reference to the memory of an {@link OffHeapResource}, keeping it allocated until closed.
+     */
+    public class Lease implements Closeable {
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private Lease() {
+        }
+
+        /**
+         * Returns a view of the resource's memory. The view has its own position and limit, but shares its content with the resource. It must not be used after the lease has been closed.
+         *
+         * @return buffer view
+         * @throws IllegalStateException if the lease has been closed
+         */
+        public ByteBuffer getBuffer() {
+            if (closed.get()) {
+                throw new IllegalStateException("Lease has already been closed.");
+            }
+            return buffer.duplicate();
+        }
+
+        /**
+         * Returns the resource this lease was acquired from.
+         *
+         * @return leased resource
+         */
+        public OffHeapResource getResource() {
+            return OffHeapResource.this;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                dropReference();
+            }
+        }
+    }
+
+    /**
+     * Frees a direct buffer immediately when the running JVM allows it; otherwise the memory is left to be reclaimed by the garbage collector.
+     *
+     * @param buffer direct buffer to free
+     */
+    private static void free(ByteBuffer buffer) {
+        try {
+            // Java 9+: sun.misc.Unsafe#invokeCleaner(ByteBuffer)
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (NoSuchMethodException e) {
+            // Java 7 and 8, try the buffer's own cleaner below
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Could not free direct buffer through Unsafe", e);
+            return;
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Could not free direct buffer through its cleaner", e);
+        }
+    }
+}
@@ -26,29 +26,50 @@ package com.flowpowered.filesystem;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.flowpowered.filesystem.decoder.ResourceDecoder;
 import com.flowpowered.filesystem.resolver.ResourcePathResolver;
 
 public abstract class SimpleFileSystem implements FileSystem {
     private static final Logger LOGGER = LoggerFactory.getLogger(SimpleFileSystem.class); // TODO: Make it non-static and accept it in constructor.
 
-    protected final Set<ResourceLoader> loaders = new HashSet<>();
-    protected final Map<URI, Object> loadedResources = new HashMap<>();
-    protected final List<ResourcePathResolver> pathResolvers = new ArrayList<>();
+    // copy-on-write, so that resources can be looked up while loaders and resolvers are being registered
+    protected final Set<ResourceLoader> loaders = new CopyOnWriteArraySet<>();
+    protected final Map<URI, Object> loadedResources = new ConcurrentHashMap<>();
+    // loads started by getResource, so that concurrent requests for the same resource wait for a single load
+    private final ConcurrentMap<URI, FutureTask<Object>> pendingLoads = new ConcurrentHashMap<>();
+    protected final List<ResourcePathResolver> pathResolvers = new CopyOnWriteArrayList<>();
+    protected final List<ResourceDecoder> decoders = new CopyOnWriteArrayList<>();
     protected final Map<String, URI> requestedInstallations = new HashMap<>();
+    protected final Map<URI, OffHeapResource> offHeapResources = new HashMap<>();
+    private long offHeapMemoryUsage = 0;
+    private volatile long offHeapMemoryLimit = Long.MAX_VALUE;
+    // always locked after offHeapResources when both are needed
+    private final TieredCachePolicy cachePolicy = new TieredCachePolicy();
 
     private void loadFallback(ResourceLoader loader) {
         String fallback = loader.getFallback();
@@ -87,10 +108,24 @@ public abstract class SimpleFileSystem implements FileSystem {
         loadFallback(loader);
     }
 
+    @Override
+    public List<ResourceDecoder> getDecoders() {
+        return Collections.unmodifiableList(new ArrayList<>(this.decoders));
+    }
+
+    @Override
+    public void registerDecoder(ResourceDecoder decoder) {
+        this.decoders.add(decoder);
+    }
+
     @Override
     public InputStream getResourceStream(URI path) throws ResourceNotFoundException {
+        return getResourceStream(path, this.pathResolvers);
+    }
+
+    private InputStream getResourceStream(URI path, List<ResourcePathResolver> resolvers) throws ResourceNotFoundException {
         // Find the correct search path
-        for (ResourcePathResolver resolver : this.pathResolvers) {
+        for (ResourcePathResolver resolver : resolvers) {
             InputStream stream = resolver.getStream(path);
             if (stream != null) {
                 return stream;
@@ -108,8 +143,104 @@ public abstract class SimpleFileSystem implements FileSystem {
         }
     }
 
+    @Override
+    public InputStream getResourceStream(URI path, long offset, long length) throws ResourceNotFoundException {
+        for (ResourcePathResolver resolver : this.pathResolvers) {
+            InputStream stream = resolver.getStream(path, offset, length);
+            if (stream != null) {
+                return stream;
+            }
+        }
+        throw new ResourceNotFoundException(path.toString());
+    }
+
+    @Override
+    public InputStream getResourceStream(String path, long offset, long length) throws ResourceNotFoundException {
+        try {
+            return getResourceStream(new URI(path), offset, length);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Tried to get a Resource Stream URI, but" + path + " isn't a URI", e);
+        }
+    }
+
+    @Override
+    public SeekableByteChannel getResourceChannel(URI path) throws ResourceNotFoundException {
+        for (ResourcePathResolver resolver : this.pathResolvers) {
+            SeekableByteChannel channel = resolver.getChannel(path);
+            if (channel != null) {
+                return channel;
+            }
+        }
+        throw new ResourceNotFoundException(path.toString());
+    }
+
+    @Override
+    public SeekableByteChannel getResourceChannel(String path) throws ResourceNotFoundException {
+        try {
+            return getResourceChannel(new URI(path));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Tried to get a Resource Channel URI, but" + path + " isn't a URI", e);
+        }
+    }
+
+    private static InputStream buffer(InputStream in) {
+        // resolvers may already return a stream with a buffer sized for the resource, anything else (read-ahead streams included) is wrapped so that loaders can rely on mark and reset
+        if (in instanceof BufferedInputStream) {
+            return in;
+        }
+        return new BufferedInputStream(in);
+    }
+
+    /**
+     * Opens the resource at the specified location for its loader. If the resource cannot be found, its encoded variants (the path with a decoder's extension appended) are looked up instead, and
+     * decoded if they start with the decoder's magic bytes. A resource found at the requested path is never decoded.
+     */
+    private InputStream openResource(URI uri, List<ResourcePathResolver> resolvers) throws ResourceNotFoundException, IOException {
+        try {
+            return buffer(getResourceStream(uri, resolvers));
+        } catch (ResourceNotFoundException e) {
+            for (ResourceDecoder decoder : this.decoders) {
+                InputStream in = getEncodedResourceStream(uri, resolvers, decoder);
+                if (in != null) {
+                    return decode(buffer(in), decoder);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private InputStream getEncodedResourceStream(URI uri, List<ResourcePathResolver> resolvers, ResourceDecoder decoder) {
+        try {
+            URI encoded = new URI(uri.getScheme(), uri.getAuthority(), uri.getPath() + "." + decoder.getExtension(), uri.getQuery(), uri.getFragment());
+            return getResourceStream(encoded, resolvers);
+        } catch (URISyntaxException | ResourceNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static InputStream decode(InputStream in, ResourceDecoder decoder) throws IOException {
+        // sniff the magic bytes without consuming them, the extension alone does not make a resource encoded
+        byte[] header = new byte[decoder.getMagicLength()];
+        try {
+            in.mark(header.length);
+            int read = IOUtils.read(in, header);
+            in.reset();
+            if (decoder.matches(header, read)) {
+                return new BufferedInputStream(decoder.decode(in));
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
     @Override
     public Object loadResource(URI uri) throws LoaderNotFoundException, ResourceNotFoundException, IOException {
+        return loadResource(uri, snapshotPathResolvers(), false);
+    }
+
+    private Object loadResource(URI uri, List<ResourcePathResolver> resolvers, boolean bulk) throws LoaderNotFoundException, ResourceNotFoundException, IOException {
         // find the loader
         // this needs to be thrown first, so we can use a fallback loader and know it exists
         String scheme = uri.getScheme();
@@ -119,12 +250,12 @@ public abstract class SimpleFileSystem implements FileSystem {
         }
 
         // grab the input stream
-        try (InputStream in = new BufferedInputStream(getResourceStream(uri))) {
+        try (InputStream in = openResource(uri, resolvers)) {
             Object resource = loader.load(in);
             if (resource == null) {
                 throw new IllegalStateException("Loader for scheme '" + scheme + "' returned a null resource.");
             }
-            this.loadedResources.put(uri, resource);
+            cacheResource(uri, resource, bulk);
             return resource;
         }
     }
@@ -138,6 +269,242 @@ public abstract class SimpleFileSystem implements FileSystem {
         }
     }
 
+    private void cacheResource(URI uri, Object resource, boolean bulk) {
+        Object previous;
+        List<Object> evicted = new ArrayList<>();
+        // the cache and the off-heap accounting are updated together, so that concurrent reloads cannot lose track of memory
+        synchronized (this.offHeapResources) {
+            previous = this.loadedResources.put(uri, resource);
+            untrackOffHeap(uri, previous);
+            if (resource instanceof OffHeapResource) {
+                OffHeapResource offHeap = (OffHeapResource) resource;
+                this.offHeapResources.put(uri, offHeap);
+                this.offHeapMemoryUsage += offHeap.getSize();
+            }
+            if (!isFallback(uri)) {
+                removeEvicted(this.cachePolicy.recordInsert(uri, bulk), evicted);
+            }
+        }
+        if (previous != resource) {
+            releaseOffHeap(previous);
+        }
+        for (Object evictedResource : evicted) {
+            releaseOffHeap(evictedResource);
+        }
+        if (resource instanceof OffHeapResource) {
+            trimOffHeapMemory(uri);
+        }
+    }
+
+    // must be called while holding the offHeapResources lock
+    private void untrackOffHeap(URI uri, Object resource) {
+        if (resource instanceof OffHeapResource && this.offHeapResources.get(uri) == resource) {
+            this.offHeapResources.remove(uri);
+            this.offHeapMemoryUsage -= ((OffHeapResource) resource).getSize();
+        }
+    }
+
+    // must be called while holding the offHeapResources lock, the removed resources are added to the list so that they can be released afterwards
+    private void removeEvicted(List<URI> uris, List<Object> removed) {
+        for (URI uri : uris) {
+            Object resource = this.loadedResources.remove(uri);
+            untrackOffHeap(uri, resource);
+            removed.add(resource);
+        }
+    }
+
+    private static void releaseOffHeap(Object resource) {
+        if (resource instanceof OffHeapResource) {
+            ((OffHeapResource) resource).release();
+        }
+    }
+
+    private boolean isFallback(URI uri) {
+        for (ResourceLoader loader : this.loaders) {
+            if (uri.toString().equals(loader.getFallback())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unloads off-heap resources until the memory usage fits in the limit again, in the cache policy's eviction order, so that resources loaded by a directory scan go before the frequently used ones.
+     * The resource that was just loaded, the pinned resources and the fallback resources are never evicted.
+     *
+     * @param loaded uri of the resource that was just loaded, or null
+     */
+    private void trimOffHeapMemory(URI loaded) {
+        List<OffHeapResource> evicted = new ArrayList<>();
+        long usage;
+        synchronized (this.offHeapResources) {
+            if (this.offHeapMemoryUsage > this.offHeapMemoryLimit) {
+                // pinned and fallback resources are not tracked by the policy
+                for (URI uri : this.cachePolicy.getEvictionOrder()) {
+                    if (this.offHeapMemoryUsage <= this.offHeapMemoryLimit) {
+                        break;
+                    }
+                    OffHeapResource resource = uri.equals(loaded) ? null : this.offHeapResources.remove(uri);
+                    if (resource != null) {
+                        this.loadedResources.remove(uri);
+                        this.cachePolicy.recordRemoval(uri);
+                        this.offHeapMemoryUsage -= resource.getSize();
+                        evicted.add(resource);
+                    }
+                }
+            }
+            usage = this.offHeapMemoryUsage;
+        }
+        for (OffHeapResource resource : evicted) {
+            resource.release();
+        }
+        if (usage > this.offHeapMemoryLimit) {
+            LOGGER.warn("Off-heap memory usage of " + usage + " bytes exceeds the limit of " + this.offHeapMemoryLimit + " bytes");
+        }
+    }
+
+    @Override
+    public boolean unloadResource(URI uri) {
+        Object resource;
+        synchronized (this.offHeapResources) {
+            resource = this.loadedResources.remove(uri);
+            untrackOffHeap(uri, resource);
+            this.cachePolicy.recordRemoval(uri);
+        }
+        if (resource == null) {
+            return false;
+        }
+        releaseOffHeap(resource);
+        return true;
+    }
+
+    @Override
+    public boolean unloadResource(String uri) {
+        try {
+            return unloadResource(new URI(uri));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Specified URI is not valid.", e);
+        }
+    }
+
+    @Override
+    public long getOffHeapMemoryUsage() {
+        synchronized (this.offHeapResources) {
+            return this.offHeapMemoryUsage;
+        }
+    }
+
+    /**
+     * Returns the maximum amount of direct memory the cached {@link OffHeapResource}s may hold before the least recently used ones get unloaded.
+     *
+     * @return off-heap memory limit in bytes
+     */
+    public long getOffHeapMemoryLimit() {
+        return this.offHeapMemoryLimit;
+    }
+
+    /**
+     * Sets the maximum amount of direct memory the cached {@link OffHeapResource}s may hold before some get unloaded. They are unloaded in the same order as for
+     * {@link #setMaximumCachedResources(int)}, and the resources in excess of the new limit are unloaded right away.
+     *
+     * @param limit in bytes, {@link Long#MAX_VALUE} for no limit
+     */
+    public void setOffHeapMemoryLimit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Off-heap memory limit cannot be negative.");
+        }
+        List<Object> evicted = new ArrayList<>();
+        synchronized (this.offHeapResources) {
+            this.offHeapMemoryLimit = limit;
+            updateTracking(evicted);
+        }
+        for (Object resource : evicted) {
+            releaseOffHeap(resource);
+        }
+        trimOffHeapMemory(null);
+    }
+
+    // must be called while holding the offHeapResources lock, the cache policy only tracks the resources while a limit is set
+    private void updateTracking(List<Object> evicted) {
+        boolean tracking = this.cachePolicy.getMaximumSize() != Integer.MAX_VALUE || this.offHeapMemoryLimit != Long.MAX_VALUE;
+        List<URI> cached = new ArrayList<>();
+        if (tracking && !this.cachePolicy.isTracking()) {
+            for (URI uri : this.loadedResources.keySet()) {
+                if (!isFallback(uri)) {
+                    cached.add(uri);
+                }
+            }
+        }
+        removeEvicted(this.cachePolicy.setTracking(tracking, cached), evicted);
+    }
+
+    /**
+     * Returns the maximum number of cached resources, pinned resources excluded, before some get unloaded.
+     *
+     * @return maximum number of cached resources
+     */
+    public int getMaximumCachedResources() {
+        return this.cachePolicy.getMaximumSize();
+    }
+
+    /**
+     * Sets the maximum number of cached resources, pinned resources excluded, before some get unloaded. Resources requested again after being loaded are kept over those loaded only once, and
+     * resources loaded by {@link #getResources(java.net.URI)} are unloaded first. Resources in excess of the new maximum are unloaded right away. The cache is unbounded by default; while neither
+     * this nor an off-heap memory limit is set, requests skip the bookkeeping.
+     *
+     * @param maximum number of cached resources, {@link Integer#MAX_VALUE} for no maximum
+     */
+    public void setMaximumCachedResources(int maximum) {
+        List<Object> evicted = new ArrayList<>();
+        synchronized (this.offHeapResources) {
+            removeEvicted(this.cachePolicy.setMaximumSize(maximum), evicted);
+            updateTracking(evicted);
+        }
+        for (Object resource : evicted) {
+            releaseOffHeap(resource);
+        }
+    }
+
+    /**
+     * Returns the URI prefixes of the pinned resources.
+     *
+     * @return pinned URI prefixes
+     * @see #pinResources(String)
+     */
+    public Set<String> getPinnedResources() {
+        return this.cachePolicy.getPinnedPrefixes();
+    }
+
+    /**
+     * Pins the resources whose URI starts with the specified prefix, e.g. {@code "font://"} for a whole scheme or {@code "texture://ui/"} for a directory. Pinned resources are never unloaded to make
+     * room for others, neither by the cache size limit nor by the off-heap memory limit, and looking them up never contends with loads.
+     *
+     * @param uriPrefix of the resources to pin
+     */
+    public void pinResources(String uriPrefix) {
+        this.cachePolicy.pin(uriPrefix);
+    }
+
+    /**
+     * Unpins the resources whose URI starts with the specified prefix. The cached resources that are no longer pinned become candidates for unloading again.
+     *
+     * @param uriPrefix of the resources to unpin
+     */
+    public void unpinResources(String uriPrefix) {
+        this.cachePolicy.unpin(uriPrefix);
+        List<Object> evicted = new ArrayList<>();
+        synchronized (this.offHeapResources) {
+            for (URI uri : this.loadedResources.keySet()) {
+                if (uri.toString().startsWith(uriPrefix) && !this.cachePolicy.isPinned(uri) && !isFallback(uri)) {
+                    removeEvicted(this.cachePolicy.recordInsert(uri, false), evicted);
+                }
+            }
+        }
+        for (Object resource : evicted) {
+            releaseOffHeap(resource);
+        }
+    }
+
     @SuppressWarnings ("unchecked")
     private <R> R tryCast(Object obj, String scheme) {
         try {
@@ -149,14 +516,35 @@ public abstract class SimpleFileSystem implements FileSystem {
 
     @Override
     public <R> R getResource(URI uri) {
-        if (this.loadedResources.containsKey(uri)) {
+        return getResource(uri, null, false);
+    }
+
+    /**
+     * Returns the resource at the specified path, loading it with the given resolvers if it is not loaded yet. Without resolvers, the current ones are only snapshotted if the resource has to be loaded,
+     * so that cache hits do not copy them.
+     *
+     * @param uri to get resource from
+     * @param resolvers snapshot of the path resolvers to load the resource with, or null to take one when needed
+     * @param bulk true if the resource is requested as part of a bulk load, which does not count as a use of already loaded resources
+     * @param <R> inferred type of resource
+     * @return resource at path
+     */
+    private <R> R getResource(URI uri, List<ResourcePathResolver> resolvers, boolean bulk) {
+        Object resource = this.loadedResources.get(uri);
+        if (resource != null) {
             // already loaded
-            return tryCast(this.loadedResources.get(uri), uri.getScheme());
+            if (!bulk && !this.cachePolicy.isPinned(uri)) {
+                // mark it as recently used, which only matters once a limit is set
+                if (this.cachePolicy.isTracking()) {
+                    this.cachePolicy.recordAccess(uri);
+                }
+            }
+            return tryCast(resource, uri.getScheme());
         }
 
         try {
             // not loaded yet
-            return tryCast(loadResource(uri), uri.getScheme());
+            return tryCast(loadResourceOnce(uri, resolvers != null ? resolvers : snapshotPathResolvers(), bulk), uri.getScheme());
         } catch (LoaderNotFoundException e) {
             // scheme has not loader
             throw new IllegalArgumentException("No loader found for scheme " + uri.getScheme(), e);
@@ -181,6 +569,50 @@ public abstract class SimpleFileSystem implements FileSystem {
         }
     }
 
+    /**
+     * Loads the resource at the specified location, unless another thread is already loading it through this method, in which case that load is awaited instead.
+     */
+    private Object loadResourceOnce(final URI uri, final List<ResourcePathResolver> resolvers, final boolean bulk) throws LoaderNotFoundException, ResourceNotFoundException, IOException {
+        FutureTask<Object> task = new FutureTask<>(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                // it may have been loaded since it was last looked up
+                Object resource = loadedResources.get(uri);
+                return resource != null ? resource : loadResource(uri, resolvers, bulk);
+            }
+        });
+        FutureTask<Object> pending = this.pendingLoads.putIfAbsent(uri, task);
+        if (pending == null) {
+            pending = task;
+            try {
+                task.run();
+            } finally {
+                this.pendingLoads.remove(uri, task);
+            }
+        }
+
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + uri.toString() + " to load");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof LoaderNotFoundException) {
+                throw (LoaderNotFoundException) cause;
+            } else if (cause instanceof ResourceNotFoundException) {
+                throw (ResourceNotFoundException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unexpected exception while loading " + uri.toString(), cause);
+        }
+    }
+
     @Override
     public <R> R getResource(String uri) {
         try {
@@ -190,8 +622,37 @@ public abstract class SimpleFileSystem implements FileSystem {
         }
     }
 
-    private ResourcePathResolver getPathResolver(URI uri) {
-        for (ResourcePathResolver resolver : this.pathResolvers) {
+    @Override
+    public OffHeapResource.Lease acquireResource(URI uri) {
+        return acquireResource(uri, null, false);
+    }
+
+    private OffHeapResource.Lease acquireResource(URI uri, List<ResourcePathResolver> resolvers, boolean bulk) {
+        while (true) {
+            Object resource = getResource(uri, resolvers, bulk);
+            if (!(resource instanceof OffHeapResource)) {
+                throw new IllegalArgumentException("Resource at " + uri.toString() + " is not an off-heap resource.");
+            }
+            // the reference count cannot be raised once it dropped to zero, so either the lease keeps the memory alive or the resource has already been freed
+            OffHeapResource.Lease lease = ((OffHeapResource) resource).tryAcquire();
+            if (lease != null) {
+                return lease;
+            }
+            // evicted and freed by a concurrent load before the lease was taken, get it again
+        }
+    }
+
+    @Override
+    public OffHeapResource.Lease acquireResource(String uri) {
+        try {
+            return acquireResource(new URI(uri));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Specified URI '" + uri + "' is invalid.", e);
+        }
+    }
+
+    private ResourcePathResolver getPathResolver(URI uri, List<ResourcePathResolver> resolvers) {
+        for (ResourcePathResolver resolver : resolvers) {
             if (resolver.existsInPath(uri)) {
                 return resolver;
             }
@@ -199,20 +660,66 @@ public abstract class SimpleFileSystem implements FileSystem {
         return null;
     }
 
-    @Override
-    public <R> List<R> getResources(URI uri) {
-        ResourcePathResolver resolver = getPathResolver(uri);
+    /**
+     * Lists the resources of the specified directory.
+     */
+    private List<URI> listResources(URI uri, List<ResourcePathResolver> resolvers) {
+        ResourcePathResolver resolver = getPathResolver(uri, resolvers);
         if (resolver == null) {
             throw new IllegalArgumentException("Could not resolve path '" + uri.toString() + "'");
         }
 
+        List<URI> uris = new ArrayList<>();
+        try (DirectoryStream<Path> files = resolver.list(uri)) {
+            if (files == null) {
+                throw new IllegalArgumentException("Could not list path '" + uri.toString() + "'");
+            }
+            for (Path file : files) {
+                uris.add(URI.create(uri.getScheme() + "://" + uri.getHost() + uri.getPath() + file.getFileName().toString()));
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("An exception occurred when listing the resources at " + uri.toString(), e);
+        }
+        return uris;
+    }
+
+    @Override
+    public <R> List<R> getResources(URI uri) {
+        // the whole directory is loaded against the resolvers present when the call started
+        List<ResourcePathResolver> resolvers = snapshotPathResolvers();
         List<R> resources = new ArrayList<>();
-        for (Path file : resolver.list(uri)) {
-            resources.add((R) getResource(uri.getScheme() + "://" + uri.getHost() + uri.getPath() + file.getFileName().toString()));
+        for (URI fileUri : listResources(uri, resolvers)) {
+            resources.add(this.<R>getResource(fileUri, resolvers, true));
         }
         return resources;
     }
 
+    @Override
+    public List<OffHeapResource.Lease> acquireResources(URI uri) {
+        List<ResourcePathResolver> resolvers = snapshotPathResolvers();
+        List<OffHeapResource.Lease> leases = new ArrayList<>();
+        try {
+            for (URI fileUri : listResources(uri, resolvers)) {
+                leases.add(acquireResource(fileUri, resolvers, true));
+            }
+        } catch (RuntimeException e) {
+            for (OffHeapResource.Lease lease : leases) {
+                lease.close();
+            }
+            throw e;
+        }
+        return leases;
+    }
+
+    @Override
+    public List<OffHeapResource.Lease> acquireResources(String uri) {
+        try {
+            return acquireResources(new URI(uri));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Specified uri is invalid", e);
+        }
+    }
+
     @Override
     public <R> List<R> getResources(String uri) {
         try {
@@ -222,9 +729,19 @@ public abstract class SimpleFileSystem implements FileSystem {
         }
     }
 
+    /**
+     * Returns the path resolvers present right now. A load walks the resolvers several times (the resource itself, then its encoded variants), all of them have to see the same ones.
+     */
+    private List<ResourcePathResolver> snapshotPathResolvers() {
+        return Arrays.asList(this.pathResolvers.toArray(new ResourcePathResolver[0]));
+    }
+
+    /**
+     * {@inheritDoc} The returned list is an immutable snapshot; it is not affected by later additions or removals.
+     */
     @Override
     public List<ResourcePathResolver> getPathResolvers() {
-        return Collections.unmodifiableList(this.pathResolvers);
+        return Collections.unmodifiableList(new ArrayList<>(this.pathResolvers));
     }
 
     @Override
@@ -0,0 +1,327 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Decides which cached resources get evicted once the cache is full. Resources matching a pinned URI prefix form a hot tier that is never evicted. The others are kept in a segmented LRU: new
+ * resources enter a probation segment, and are promoted to a protected segment when they are requested again. Resources loaded as part of a bulk (directory) load are admitted at the eviction end of
+ * the probation segment and are not promoted by the bulk load itself, so a large one-off scan only evicts its own resources instead of flushing the frequently used ones.
+ * <p>
+ * The same order decides which off-heap resources get unloaded when the off-heap memory limit is exceeded, see {@link #getEvictionOrder()}.
+ * <p>
+ * This class only tracks URIs, the resources themselves are stored by the {@link SimpleFileSystem}. Nothing is tracked until {@link #setTracking(boolean, Collection)} turns tracking on, which the
+ * file system only does once a limit is set, so that cache hits do not pay for a policy that never evicts.
+ */
+class TieredCachePolicy {
+    private static final float PROTECTED_RATIO = 0.8f;
+    private final Set<String> pinnedPrefixes = new CopyOnWriteArraySet<>();
+    private final Map<URI, Node> nodes = new HashMap<>();
+    private final Segment probation = new Segment();
+    private final Segment protectedSegment = new Segment();
+    private volatile int maximumSize = Integer.MAX_VALUE;
+    // read without locking on the hit path
+    private volatile boolean tracking = false;
+
+    /**
+     * Returns true if the specified URI matches one of the pinned prefixes. This does not lock, so that lookups of pinned resources never contend.
+     *
+     * @param uri to check
+     * @return true if pinned
+     */
+    boolean isPinned(URI uri) {
+        if (pinnedPrefixes.isEmpty()) {
+            return false;
+        }
+        String string = uri.toString();
+        for (String prefix : pinnedPrefixes) {
+            if (string.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Set<String> getPinnedPrefixes() {
+        return Collections.unmodifiableSet(pinnedPrefixes);
+    }
+
+    /**
+     * Pins the URIs starting with the specified prefix. Tracked URIs matching it stop being candidates for eviction.
+     *
+     * @param prefix of the URIs to pin
+     */
+    synchronized void pin(String prefix) {
+        pinnedPrefixes.add(prefix);
+        Iterator<Map.Entry<URI, Node>> it = nodes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<URI, Node> entry = it.next();
+            if (entry.getKey().toString().startsWith(prefix)) {
+                entry.getValue().unlink();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Unpins the URIs starting with the specified prefix. The cached resources that are no longer pinned must be inserted again to become candidates for eviction.
+     *
+     * @param prefix of the URIs to unpin
+     */
+    void unpin(String prefix) {
+        pinnedPrefixes.remove(prefix);
+    }
+
+    int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns true if the URIs are being tracked. This does not lock, so that cache hits can skip the bookkeeping while no limit is set.
+     *
+     * @return true if tracking
+     */
+    boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * Turns tracking on or off. When it is turned on, the URIs already cached start being tracked, as if they had just been inserted. When it is turned off, all the tracked URIs are forgotten.
+     *
+     * @param tracking true to track the URIs
+     * @param cached URIs of the resources currently cached that can be evicted
+     * @return the URIs to evict to fit in the maximum size
+     */
+    synchronized List<URI> setTracking(boolean tracking, Collection<URI> cached) {
+        if (tracking == this.tracking) {
+            return Collections.emptyList();
+        }
+        this.tracking = tracking;
+        if (!tracking) {
+            nodes.clear();
+            probation.clear();
+            protectedSegment.clear();
+            return Collections.emptyList();
+        }
+        for (URI uri : cached) {
+            if (!isPinned(uri)) {
+                Node node = new Node(uri);
+                nodes.put(uri, node);
+                probation.addMostRecent(node);
+            }
+        }
+        List<URI> evicted = new ArrayList<>();
+        evict(null, evicted);
+        return evicted;
+    }
+
+    /**
+     * Sets the maximum number of tracked URIs.
+     *
+     * @param maximumSize new maximum
+     * @return the URIs to evict to fit in the new maximum
+     */
+    synchronized List<URI> setMaximumSize(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum cache size must be at least 1.");
+        }
+        this.maximumSize = maximumSize;
+        List<URI> evicted = new ArrayList<>();
+        evict(null, evicted);
+        return evicted;
+    }
+
+    /**
+     * Returns the tracked URIs, from the first to the last to evict: the probation segment, then the protected one, each from the least to the most recently used.
+     *
+     * @return tracked URIs in eviction order
+     */
+    synchronized List<URI> getEvictionOrder() {
+        List<URI> order = new ArrayList<>(nodes.size());
+        probation.addTo(order);
+        protectedSegment.addTo(order);
+        return order;
+    }
+
+    /**
+     * Records a resource entering the cache.
+     *
+     * @param uri of the resource
+     * @param bulk true if the resource was loaded as part of a bulk load
+     * @return the URIs to evict to make room for it
+     */
+    synchronized List<URI> recordInsert(URI uri, boolean bulk) {
+        remove(uri);
+        if (!tracking || isPinned(uri)) {
+            return Collections.emptyList();
+        }
+        Node node = new Node(uri);
+        nodes.put(uri, node);
+        if (bulk) {
+            probation.addLeastRecent(node);
+        } else {
+            probation.addMostRecent(node);
+        }
+
+        List<URI> evicted = new ArrayList<>();
+        evict(node, evicted);
+        return evicted;
+    }
+
+    private void evict(Node excluded, List<URI> evicted) {
+        while (nodes.size() > maximumSize) {
+            Node victim = probation.leastRecentExcept(excluded);
+            if (victim == null) {
+                victim = protectedSegment.leastRecentExcept(excluded);
+            }
+            if (victim == null) {
+                break;
+            }
+            victim.unlink();
+            nodes.remove(victim.uri);
+            evicted.add(victim.uri);
+        }
+    }
+
+    /**
+     * Records a request of a cached resource, promoting it to the protected segment.
+     *
+     * @param uri of the resource
+     */
+    synchronized void recordAccess(URI uri) {
+        Node node = nodes.get(uri);
+        if (node == null) {
+            return;
+        }
+        node.unlink();
+        protectedSegment.addMostRecent(node);
+        int protectedCapacity = Math.max(1, (int) (maximumSize * PROTECTED_RATIO));
+        if (protectedSegment.size > protectedCapacity) {
+            // demote to probation, it gets a second chance before being evicted
+            Node demoted = protectedSegment.leastRecentExcept(node);
+            demoted.unlink();
+            probation.addMostRecent(demoted);
+        }
+    }
+
+    /**
+     * Records a resource leaving the cache.
+     *
+     * @param uri of the resource
+     */
+    synchronized void recordRemoval(URI uri) {
+        remove(uri);
+    }
+
+    private void remove(URI uri) {
+        Node node = nodes.remove(uri);
+        if (node != null) {
+            node.unlink();
+        }
+    }
+
+    private static class Node {
+        private final URI uri;
+        private Node previous;
+        private Node next;
+        private Segment segment;
+
+        private Node(URI uri) {
+            this.uri = uri;
+        }
+
+        private void unlink() {
+            if (segment == null) {
+                return;
+            }
+            previous.next = next;
+            next.previous = previous;
+            previous = null;
+            next = null;
+            segment.size--;
+            segment = null;
+        }
+    }
+
+    /**
+     * A doubly linked list of nodes, from the least to the most recently used.
+     */
+    private static class Segment {
+        private final Node head = new Node(null);
+        private int size = 0;
+
+        private Segment() {
+            head.previous = head;
+            head.next = head;
+        }
+
+        private void clear() {
+            head.previous = head;
+            head.next = head;
+            size = 0;
+        }
+
+        private void addTo(List<URI> uris) {
+            for (Node node = head.next; node != head; node = node.next) {
+                uris.add(node.uri);
+            }
+        }
+
+        private void addMostRecent(Node node) {
+            link(node, head.previous, head);
+        }
+
+        private void addLeastRecent(Node node) {
+            link(node, head, head.next);
+        }
+
+        private void link(Node node, Node previous, Node next) {
+            node.previous = previous;
+            node.next = next;
+            previous.next = node;
+            next.previous = node;
+            node.segment = this;
+            size++;
+        }
+
+        private Node leastRecentExcept(Node excluded) {
+            for (Node node = head.next; node != head; node = node.next) {
+                if (node != excluded) {
+                    return node;
+                }
+            }
+            return null;
+        }
+    }
+}
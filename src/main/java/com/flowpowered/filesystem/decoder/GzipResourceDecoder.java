@@ -0,0 +1,199 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem.decoder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes gzip compressed resources. Unlike {@link java.util.zip.GZIPInputStream}, the native {@link Inflater}s and the input buffers are pooled and reused across resources. Only the first member of
+ * a multi-member gzip file is decoded.
+ */
+public class GzipResourceDecoder extends ResourceDecoder {
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int DEFAULT_POOL_SIZE = 16;
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private final BlockingQueue<Inflater> inflaters;
+    private final BlockingQueue<byte[]> buffers;
+    private final int bufferSize;
+
+    public GzipResourceDecoder() {
+        this(DEFAULT_POOL_SIZE, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param poolSize maximum number of idle inflaters and buffers kept for reuse
+     * @param bufferSize size of the buffers holding the compressed input
+     */
+    public GzipResourceDecoder(int poolSize, int bufferSize) {
+        // ID1, ID2 and the deflate compression method, the only one defined
+        super("gz", (byte) 0x1f, (byte) 0x8b, (byte) Deflater.DEFLATED);
+        this.inflaters = new ArrayBlockingQueue<>(poolSize);
+        this.buffers = new ArrayBlockingQueue<>(poolSize);
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public InputStream decode(InputStream in) throws IOException {
+        readHeader(in);
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new byte[bufferSize];
+        }
+        return new GzipInputStream(in, inflater, buffer);
+    }
+
+    private void release(Inflater inflater, byte[] buffer) {
+        inflater.reset();
+        if (!inflaters.offer(inflater)) {
+            inflater.end();
+        }
+        buffers.offer(buffer);
+    }
+
+    private static int readUByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Unexpected end of gzip stream");
+        }
+        return b;
+    }
+
+    private static int readUShort(InputStream in) throws IOException {
+        return readUByte(in) | readUByte(in) << 8;
+    }
+
+    private static void skipBytes(InputStream in, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readUByte(in);
+        }
+    }
+
+    private static void skipZeroTerminated(InputStream in) throws IOException {
+        while (readUByte(in) != 0) {
+        }
+    }
+
+    /**
+     * Reads the member header (RFC 1952), leaving the stream at the start of the deflated data.
+     */
+    private static void readHeader(InputStream in) throws IOException {
+        if (readUShort(in) != 0x8b1f) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (readUByte(in) != Deflater.DEFLATED) {
+            throw new ZipException("Unsupported gzip compression method");
+        }
+        int flags = readUByte(in);
+        // modification time, extra flags and operating system
+        skipBytes(in, 6);
+        if ((flags & FEXTRA) != 0) {
+            skipBytes(in, readUShort(in));
+        }
+        if ((flags & FNAME) != 0) {
+            skipZeroTerminated(in);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            skipZeroTerminated(in);
+        }
+        if ((flags & FHCRC) != 0) {
+            skipBytes(in, 2);
+        }
+    }
+
+    private class GzipInputStream extends InflaterInputStream {
+        private final CRC32 crc = new CRC32();
+        private boolean trailerChecked = false;
+        private boolean released = false;
+
+        public GzipInputStream(InputStream in, Inflater inflater, byte[] buffer) {
+            // use the pooled buffer instead of allocating a new one in the super constructor
+            super(in, inflater, 1);
+            this.buf = buffer;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                crc.update(b, off, read);
+            } else if (read == -1 && !trailerChecked) {
+                checkTrailer();
+            }
+            return read;
+        }
+
+        private void checkTrailer() throws IOException {
+            trailerChecked = true;
+            // the trailer may already be in the input buffer, after the end of the deflated data
+            byte[] trailer = new byte[8];
+            int remaining = Math.min(inf.getRemaining(), trailer.length);
+            System.arraycopy(buf, len - inf.getRemaining(), trailer, 0, remaining);
+            for (int i = remaining; i < trailer.length; i++) {
+                trailer[i] = (byte) readUByte(in);
+            }
+            long expectedCrc = readUInt(trailer, 0);
+            long expectedSize = readUInt(trailer, 4);
+            if (expectedCrc != crc.getValue() || expectedSize != (inf.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("Corrupt gzip trailer");
+            }
+        }
+
+        private long readUInt(byte[] b, int off) {
+            return (b[off] & 0xffL) | (b[off + 1] & 0xffL) << 8 | (b[off + 2] & 0xffL) << 16 | (b[off + 3] & 0xffL) << 24;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!released) {
+                    released = true;
+                    release(inf, buf);
+                }
+            }
+        }
+    }
+}
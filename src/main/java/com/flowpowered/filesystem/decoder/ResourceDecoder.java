@@ -0,0 +1,90 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem.decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes resources stored in an encoded form, such as compressed resources, before they are handed to their {@link com.flowpowered.filesystem.ResourceLoader}. Encoded resources are stored next to
+ * the requested path with the decoder's extension appended (e.g. {@code textures/stone.png.gz}), and are only decoded if they start with the decoder's magic bytes. Resources requested by their
+ * encoded path are never decoded, so loaders consuming an encoded format still get it as is.
+ */
+public abstract class ResourceDecoder {
+    private final String extension;
+    private final byte[] magic;
+
+    public ResourceDecoder(String extension, byte... magic) {
+        if (magic.length == 0) {
+            throw new IllegalArgumentException("A decoder needs magic bytes to recognize its resources.");
+        }
+        this.extension = extension;
+        this.magic = magic.clone();
+    }
+
+    /**
+     * Returns a stream of the decoded data read from the specified {@link InputStream}. The specified stream is positioned at the start of the encoded data, and must be closed when the returned
+     * stream is closed.
+     *
+     * @param in stream of the encoded data
+     * @return stream of the decoded data
+     * @throws IOException if the encoded data could not be read
+     */
+    public abstract InputStream decode(InputStream in) throws IOException;
+
+    /**
+     * Returns the file extension of the resources encoded this way, without the leading dot.
+     *
+     * @return extension
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Returns the number of magic bytes this decoder needs to recognize its resources.
+     *
+     * @return magic length
+     */
+    public int getMagicLength() {
+        return magic.length;
+    }
+
+    /**
+     * Returns true if the specified header starts with this decoder's magic bytes.
+     *
+     * @param header first bytes of the resource
+     * @param length number of valid bytes in the header
+     * @return true if this decoder can decode the resource
+     */
+    public boolean matches(byte[] header, int length) {
+        return length >= magic.length && Arrays.equals(Arrays.copyOf(header, magic.length), magic);
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceDecoder(" + extension + ")";
+    }
+}
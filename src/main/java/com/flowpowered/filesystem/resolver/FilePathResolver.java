@@ -23,14 +23,37 @@
  */
 package com.flowpowered.filesystem.resolver;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.io.input.BoundedInputStream;
 
 public class FilePathResolver implements ResourcePathResolver {
+    /**
+     * Smallest buffer used for resource streams.
+     */
+    public static final int MIN_BUFFER_SIZE = 8 * 1024;
+    /**
+     * Largest buffer used for resource streams read through a {@link BufferedInputStream}.
+     */
+    public static final int MAX_STREAM_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Largest buffer used for resource streams read through a {@link ReadAheadInputStream}.
+     */
+    public static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    /**
+     * Files at least this large are read through a {@link ReadAheadInputStream}.
+     */
+    public static final long READ_AHEAD_THRESHOLD = 1024 * 1024;
     protected final Path directory;
 
     public FilePathResolver(Path path) {
@@ -38,6 +61,10 @@ public class FilePathResolver implements ResourcePathResolver {
     }
 
     public Path getPath(String host, String path) {
+        // URI paths are absolute, but must be resolved within the host directory
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
         return directory.resolve(host).resolve(path);
     }
 
@@ -51,10 +78,37 @@ public class FilePathResolver implements ResourcePathResolver {
         return this.existsInPath(uri.getHost(), uri.getPath());
     }
 
+    /**
+     * Returns the buffer size to use when streaming a file of the specified size through a {@link BufferedInputStream}. Small files are read in a single chunk, but the buffer never exceeds
+     * {@link #MAX_STREAM_BUFFER_SIZE}, so that loading a resource does not allocate a large array on top of the loader's own copy.
+     *
+     * @param size of the file in bytes
+     * @return buffer size in bytes
+     */
+    protected int getBufferSize(long size) {
+        return (int) Math.min(MAX_STREAM_BUFFER_SIZE, Math.max(MIN_BUFFER_SIZE, size));
+    }
+
+    /**
+     * Returns the size of each of the two buffers to use when streaming a file of the specified size through a {@link ReadAheadInputStream}: a sixteenth of the file, bounded by
+     * {@link #MIN_BUFFER_SIZE} and {@link #MAX_BUFFER_SIZE}.
+     *
+     * @param size of the file in bytes
+     * @return buffer size in bytes
+     */
+    protected int getReadAheadBufferSize(long size) {
+        return (int) Math.min(MAX_BUFFER_SIZE, Math.max(MIN_BUFFER_SIZE, size / 16));
+    }
+
     @Override
     public InputStream getStream(String host, String path) {
+        Path file = getPath(host, path);
         try {
-            return Files.newInputStream(getPath(host, path));
+            long size = Files.size(file);
+            if (size >= READ_AHEAD_THRESHOLD && isDefaultFileSystem(file)) {
+                return new ReadAheadInputStream(file, getReadAheadBufferSize(size));
+            }
+            return new BufferedInputStream(Files.newInputStream(file), getBufferSize(size));
         } catch (IOException ex) {
             return null;
         }
@@ -65,6 +119,70 @@ public class FilePathResolver implements ResourcePathResolver {
         return this.getStream(uri.getHost(), uri.getPath());
     }
 
+    @Override
+    public InputStream getStream(String host, String path, long offset, long length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and length cannot be negative.");
+        }
+        Path file = getPath(host, path);
+        try {
+            long size = Files.size(file);
+            long rangeLength = Math.max(0, Math.min(length, size - offset));
+            if (rangeLength >= READ_AHEAD_THRESHOLD && isDefaultFileSystem(file)) {
+                return new ReadAheadInputStream(file, getReadAheadBufferSize(rangeLength), offset, rangeLength);
+            }
+            SeekableByteChannel channel = getChannel(file);
+            try {
+                channel.position(offset);
+                BoundedInputStream in = new BoundedInputStream(Channels.newInputStream(channel), rangeLength);
+                return new BufferedInputStream(in, getBufferSize(rangeLength));
+            } catch (IOException | RuntimeException ex) {
+                // the stream never made it to the caller, nobody else can close the channel
+                try {
+                    channel.close();
+                } catch (IOException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+                throw ex;
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public InputStream getStream(URI uri, long offset, long length) {
+        return this.getStream(uri.getHost(), uri.getPath(), offset, length);
+    }
+
+    @Override
+    public SeekableByteChannel getChannel(String host, String path) {
+        try {
+            return getChannel(getPath(host, path));
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public SeekableByteChannel getChannel(URI uri) {
+        return this.getChannel(uri.getHost(), uri.getPath());
+    }
+
+    private SeekableByteChannel getChannel(Path file) throws IOException {
+        if (isDefaultFileSystem(file)) {
+            // positional reads
+            return Files.newByteChannel(file, StandardOpenOption.READ);
+        }
+        // other providers, like zip file systems, may not support seeking in their channels
+        return new SeekableStreamChannel(file);
+    }
+
+    private static boolean isDefaultFileSystem(Path file) {
+        // asynchronous channels are only supported by the default file system provider
+        return file.getFileSystem().provider() == FileSystems.getDefault().provider();
+    }
+
     @Override
     public DirectoryStream<Path> list(String host, String path) {
         try {
@@ -0,0 +1,157 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem.resolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link InputStream} reading a file sequentially through an {@link AsynchronousFileChannel}. While the consumer reads from one buffer, the next chunk of the file is already being read into a
+ * second one, so that disk I/O overlaps with the decoding done by the {@link com.flowpowered.filesystem.ResourceLoader}. Mark and reset are not supported; wrap the stream in a
+ * {@link java.io.BufferedInputStream} when they are needed.
+ */
+public class ReadAheadInputStream extends InputStream {
+    private final AsynchronousFileChannel channel;
+    // buffer being consumed
+    private ByteBuffer current;
+    // buffer being filled in the background
+    private ByteBuffer next;
+    private Future<Integer> pending;
+    // file position of the next chunk to read
+    private long position;
+    private final long end;
+
+    public ReadAheadInputStream(Path path, int bufferSize) throws IOException {
+        this(path, bufferSize, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a stream over a range of the file.
+     *
+     * @param path of the file
+     * @param bufferSize size of each of the two buffers
+     * @param offset of the first byte to read
+     * @param length maximum number of bytes to read
+     * @throws IOException if the file could not be opened
+     */
+    public ReadAheadInputStream(Path path, int bufferSize, long offset, long length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and length cannot be negative.");
+        }
+        this.channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+        this.position = offset;
+        this.end = length > Long.MAX_VALUE - offset ? Long.MAX_VALUE : offset + length;
+        this.current = ByteBuffer.allocate(bufferSize);
+        this.current.limit(0);
+        this.next = ByteBuffer.allocate(bufferSize);
+        prefetch();
+    }
+
+    private void prefetch() {
+        if (position >= end) {
+            pending = null;
+            return;
+        }
+        next.clear();
+        next.limit((int) Math.min(next.capacity(), end - position));
+        pending = channel.read(next, position);
+    }
+
+    /**
+     * Waits for the pending read, swaps the buffers and starts reading the following chunk.
+     *
+     * @return false if the end of the file has been reached
+     */
+    private boolean fill() throws IOException {
+        if (pending == null) {
+            return false;
+        }
+        int read;
+        try {
+            read = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for read-ahead");
+        } catch (ExecutionException e) {
+            throw new IOException("Error while reading ahead", e.getCause());
+        }
+        if (read == -1) {
+            pending = null;
+            return false;
+        }
+        position += read;
+        ByteBuffer filled = next;
+        next = current;
+        current = filled;
+        current.flip();
+        prefetch();
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (!current.hasRemaining()) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+        return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (!current.hasRemaining()) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+        int count = Math.min(len, current.remaining());
+        current.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        pending = null;
+        channel.close();
+    }
+}
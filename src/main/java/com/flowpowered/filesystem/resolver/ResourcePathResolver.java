@@ -25,6 +25,7 @@ package com.flowpowered.filesystem.resolver;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
 
@@ -63,6 +64,44 @@ public interface ResourcePathResolver {
      */
     public InputStream getStream(URI uri);
 
+    /**
+     * Returns an {@link java.io.InputStream} over a range of the resource at the given host and path. The stream ends after {@code length} bytes or at the end of the resource, whichever comes first.
+     *
+     * @param host of stream
+     * @param path within the host
+     * @param offset of the first byte to read
+     * @param length maximum number of bytes to read
+     * @return input stream or null if the stream does not exist
+     */
+    public InputStream getStream(String host, String path, long offset, long length);
+
+    /**
+     * Returns an {@link java.io.InputStream} over a range of the resource at the given host and path. The stream ends after {@code length} bytes or at the end of the resource, whichever comes first.
+     *
+     * @param uri including the host and path of the resource
+     * @param offset of the first byte to read
+     * @param length maximum number of bytes to read
+     * @return input stream or null if the stream does not exist
+     */
+    public InputStream getStream(URI uri, long offset, long length);
+
+    /**
+     * Returns a read-only {@link java.nio.channels.SeekableByteChannel} of the resource at the given host and path, for random access within the resource.
+     *
+     * @param host of channel
+     * @param path within the host
+     * @return channel or null if the resource does not exist
+     */
+    public SeekableByteChannel getChannel(String host, String path);
+
+    /**
+     * Returns a read-only {@link java.nio.channels.SeekableByteChannel} of the resource at the given host and path, for random access within the resource.
+     *
+     * @param uri including the host and path of the resource
+     * @return channel or null if the resource does not exist
+     */
+    public SeekableByteChannel getChannel(URI uri);
+
     /**
      * Lists all files in the specified directory within the host. The specified path must end in a '/' to identify the path as a directory.
      *
@@ -0,0 +1,154 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem.resolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A read-only {@link SeekableByteChannel} for files whose provider only offers sequential streams, such as the entries of a zip file system. Seeking forward skips in the current stream, seeking
+ * backward reopens it. Skipping is positional for stored (uncompressed) zip entries, but has to inflate the skipped data of deflated ones.
+ */
+public class SeekableStreamChannel implements SeekableByteChannel {
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private final Path path;
+    private final long size;
+    private InputStream in;
+    private long position = 0;
+    private boolean open = true;
+
+    public SeekableStreamChannel(Path path) throws IOException {
+        this.path = path;
+        this.size = Files.size(path);
+        this.in = Files.newInputStream(path);
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        int read;
+        if (dst.hasArray()) {
+            read = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (read > 0) {
+                dst.position(dst.position() + read);
+            }
+        } else {
+            byte[] chunk = new byte[Math.min(dst.remaining(), CHUNK_SIZE)];
+            read = in.read(chunk);
+            if (read > 0) {
+                dst.put(chunk, 0, read);
+            }
+        }
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position cannot be negative.");
+        }
+        if (newPosition < position) {
+            in.close();
+            in = Files.newInputStream(path);
+            position = 0;
+        }
+        long target = Math.min(newPosition, size);
+        if (position == 0 && target > 0) {
+            // some zip file system streams only locate the entry data on their first read, skipping before that lands at the wrong offset
+            if (in.read() != -1) {
+                position = 1;
+            }
+        }
+        while (position < target) {
+            long skipped = in.skip(target - position);
+            if (skipped <= 0) {
+                // skip may give up early, make sure we are not at the end of the stream
+                if (in.read() == -1) {
+                    break;
+                }
+                skipped = 1;
+            }
+            position += skipped;
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            in.close();
+        }
+    }
+}
@@ -23,12 +23,28 @@
  */
 package com.flowpowered.filesystem.resolver;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-public class ZipFilePathResolver extends FilePathResolver {
+/**
+ * Resolves resources inside the zip files of a directory, one zip file per host. Each zip file is opened on first use and stays open until {@link #close()} is called, which is up to the owner of the
+ * resolver: {@link com.flowpowered.filesystem.FileSystem#removePathResolver(ResourcePathResolver)} does not close it, so call {@link #close()} once the resolver has been removed and the loads still
+ * using it are done.
+ */
+public class ZipFilePathResolver extends FilePathResolver implements Closeable {
+    // zip file systems are kept open, the paths they return are only usable while they are
+    private final ConcurrentMap<Path, FileSystem> zipFileSystems = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
 
     public ZipFilePathResolver(Path path) {
         super(path);
@@ -38,13 +54,104 @@ public class ZipFilePathResolver extends FilePathResolver {
         return host + ".zip";
     }
 
+    /**
+     * Returns true if the zip file of the specified host exists and the resolver has not been closed.
+     *
+     * @param host to check
+     * @return true if the zip file exists
+     */
+    protected boolean hasZip(String host) {
+        return !closed && Files.isRegularFile(directory.resolve(getFullHost(host)));
+    }
+
+    @Override
+    public boolean existsInPath(String host, String path) {
+        return hasZip(host) && super.existsInPath(host, path);
+    }
+
+    @Override
+    public InputStream getStream(String host, String path) {
+        return hasZip(host) ? super.getStream(host, path) : null;
+    }
+
+    @Override
+    public InputStream getStream(String host, String path, long offset, long length) {
+        return hasZip(host) ? super.getStream(host, path, offset, length) : null;
+    }
+
+    @Override
+    public SeekableByteChannel getChannel(String host, String path) {
+        return hasZip(host) ? super.getChannel(host, path) : null;
+    }
+
+    @Override
+    public DirectoryStream<Path> list(String host, String path) {
+        return hasZip(host) ? super.list(host, path) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ClosedFileSystemException if the resolver has been closed
+     */
     @Override
     public Path getPath(String host, String path) {
         Path zip = directory.resolve(getFullHost(host));
-        try (FileSystem zipfs = FileSystems.newFileSystem(zip, null)) {
-            return zipfs.getPath(path);
+        try {
+            return getZipFileSystem(zip).getPath(path);
         } catch (IOException ex) {
             throw new RuntimeException("Error in getting path of ZipFilePathResolver", ex);
         }
     }
+
+    private FileSystem getZipFileSystem(Path zip) throws IOException {
+        if (closed) {
+            throw new ClosedFileSystemException();
+        }
+        FileSystem zipfs = zipFileSystems.get(zip);
+        if (zipfs == null) {
+            zipfs = FileSystems.newFileSystem(zip, (ClassLoader) null);
+            FileSystem previous = zipFileSystems.putIfAbsent(zip, zipfs);
+            if (previous != null) {
+                // another thread opened it first
+                zipfs.close();
+                zipfs = previous;
+            } else if (closed) {
+                // closed while it was being opened, close() may have missed it
+                zipFileSystems.remove(zip, zipfs);
+                zipfs.close();
+                throw new ClosedFileSystemException();
+            }
+        }
+        return zipfs;
+    }
+
+    /**
+     * Closes all the zip files opened by this resolver. Paths and streams previously obtained from it can no longer be used, and resources are no longer found through it.
+     *
+     * @throws IOException if a zip file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        IOException exception = null;
+        for (Path zip : zipFileSystems.keySet()) {
+            FileSystem zipfs = zipFileSystems.remove(zip);
+            if (zipfs == null) {
+                continue;
+            }
+            try {
+                zipfs.close();
+            } catch (IOException ex) {
+                if (exception == null) {
+                    exception = ex;
+                } else {
+                    exception.addSuppressed(ex);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
 }
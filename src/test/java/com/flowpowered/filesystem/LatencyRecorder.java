@@ -0,0 +1,121 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency of operations done by several threads, and reports the throughput and latency percentiles once they are done.
+ */
+class LatencyRecorder {
+    private final String name;
+    private final long[][] samples;
+    private final int[] counts;
+    private long startTime;
+    private long endTime;
+
+    LatencyRecorder(String name, int threads, int samplesPerThread) {
+        this.name = name;
+        this.samples = new long[threads][samplesPerThread];
+        this.counts = new int[threads];
+    }
+
+    void start() {
+        startTime = System.nanoTime();
+    }
+
+    void stop() {
+        endTime = System.nanoTime();
+    }
+
+    /**
+     * Records the latency of one operation. Each thread must use its own index.
+     *
+     * @param thread index of the recording thread
+     * @param nanos latency of the operation
+     */
+    void record(int thread, long nanos) {
+        long[] threadSamples = samples[thread];
+        if (counts[thread] < threadSamples.length) {
+            threadSamples[counts[thread]++] = nanos;
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of operations completed per second while recording.
+     *
+     * @return throughput in operations per second
+     */
+    double getThroughput() {
+        return getSortedSamples().length / ((endTime - startTime) / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Returns the latency under which the specified fraction of the operations completed.
+     *
+     * @param percentile between 0 and 1
+     * @return latency in microseconds
+     */
+    long getPercentileMicros(double percentile) {
+        return micros(percentile(getSortedSamples(), percentile));
+    }
+
+    String report() {
+        long[] all = getSortedSamples();
+        double seconds = (endTime - startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+        return String.format("%s: %d ops in %.3fs, %.0f ops/s, p50 %dus, p99 %dus, max %dus", name, all.length, seconds, getThroughput(),
+                getPercentileMicros(0.50), getPercentileMicros(0.99), getPercentileMicros(1));
+    }
+
+    private long[] getSortedSamples() {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int index = 0;
+        for (int i = 0; i < samples.length; i++) {
+            System.arraycopy(samples[i], 0, all, index, counts[i]);
+            index += counts[i];
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(percentile * (sorted.length - 1)))];
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flowpowered.filesystem.resolver.FilePathResolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SimpleFileSystemCacheTest {
+    private static final int SCAN_FILES = 64;
+    private Path root;
+    private SimpleFileSystem fileSystem;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("flow-filesystem-cache");
+        Files.createDirectories(root.resolve("assets").resolve("scan"));
+        for (int i = 0; i < 8; i++) {
+            Files.write(root.resolve("assets").resolve("hot" + i + ".txt"), ("hot" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < SCAN_FILES; i++) {
+            Files.write(root.resolve("assets").resolve("scan").resolve("s" + i + ".txt"), ("s" + i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        fileSystem = new SimpleFileSystem() {
+        };
+        fileSystem.addPathResolver(new FilePathResolver(root));
+        fileSystem.registerLoader(new ResourceLoader("text") {
+            @Override
+            public Object load(InputStream in) {
+                try {
+                    return IOUtils.toString(in, StandardCharsets.UTF_8.name());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        fileSystem.registerLoader(new ResourceLoader("offheap") {
+            @Override
+            public Object load(InputStream in) {
+                try {
+                    return OffHeapResource.read(in);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private boolean isCached(String uri) {
+        return fileSystem.loadedResources.containsKey(URI.create(uri));
+    }
+
+    @Test
+    public void testCacheSizeIsBounded() {
+        fileSystem.setMaximumCachedResources(10);
+        assertEquals(SCAN_FILES, fileSystem.getResources("text://assets/scan/").size());
+        assertEquals(10, fileSystem.loadedResources.size());
+    }
+
+    @Test
+    public void testBoundingTheCacheTracksCachedResources() {
+        for (int i = 0; i < 8; i++) {
+            fileSystem.getResource("text://assets/hot" + i + ".txt");
+        }
+        // the resources loaded while unbounded are evicted as soon as a maximum is set
+        fileSystem.setMaximumCachedResources(4);
+        assertEquals(4, fileSystem.loadedResources.size());
+        fileSystem.getResources("text://assets/scan/");
+        assertEquals(4, fileSystem.loadedResources.size());
+
+        // nothing is evicted anymore once unbounded again
+        fileSystem.setMaximumCachedResources(Integer.MAX_VALUE);
+        fileSystem.getResources("text://assets/scan/");
+        for (int i = 0; i < SCAN_FILES; i++) {
+            assertTrue(isCached("text://assets/scan/s" + i + ".txt"));
+        }
+    }
+
+    @Test
+    public void testScanDoesNotFlushFrequentlyUsedResources() {
+        fileSystem.setMaximumCachedResources(16);
+        // requested twice, promoted to the protected segment
+        for (int i = 0; i < 8; i++) {
+            fileSystem.getResource("text://assets/hot" + i + ".txt");
+            fileSystem.getResource("text://assets/hot" + i + ".txt");
+        }
+        fileSystem.getResources("text://assets/scan/");
+        for (int i = 0; i < 8; i++) {
+            assertTrue("hot" + i + " was evicted by the scan", isCached("text://assets/hot" + i + ".txt"));
+        }
+    }
+
+    @Test
+    public void testScanDoesNotFlushFrequentlyUsedOffHeapResources() {
+        // room for the four hot resources and a couple of scanned ones
+        long limit = 4 * "hot0".length() + 2 * "s10".length();
+        fileSystem.setOffHeapMemoryLimit(limit);
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 5; j++) {
+                fileSystem.getResource("offheap://assets/hot" + i + ".txt");
+            }
+        }
+        fileSystem.getResources("offheap://assets/scan/");
+        for (int i = 0; i < 4; i++) {
+            assertTrue("hot" + i + " was unloaded by the scan", isCached("offheap://assets/hot" + i + ".txt"));
+        }
+        assertTrue(fileSystem.getOffHeapMemoryUsage() <= limit);
+    }
+
+    @Test
+    public void testScanDoesNotFlushRecentResources() {
+        fileSystem.setMaximumCachedResources(16);
+        // requested once, the scan has to evict its own resources first
+        fileSystem.getResource("text://assets/hot0.txt");
+        fileSystem.getResources("text://assets/scan/");
+        assertTrue(isCached("text://assets/hot0.txt"));
+    }
+
+    @Test
+    public void testPinnedResourcesAreNeverEvicted() {
+        fileSystem.setMaximumCachedResources(1);
+        fileSystem.pinResources("text://assets/hot");
+        for (int i = 0; i < 8; i++) {
+            fileSystem.getResource("text://assets/hot" + i + ".txt");
+        }
+        fileSystem.getResources("text://assets/scan/");
+        for (int i = 0; i < 8; i++) {
+            fileSystem.getResource("text://assets/scan/s" + i + ".txt");
+            assertTrue(isCached("text://assets/hot" + i + ".txt"));
+        }
+
+        // unpinned resources become evictable again
+        fileSystem.unpinResources("text://assets/hot");
+        assertEquals(1, fileSystem.loadedResources.size());
+    }
+
+    @Test
+    public void testOffHeapUsageMatchesContent() {
+        for (int i = 0; i < 8; i++) {
+            fileSystem.getResource("offheap://assets/hot" + i + ".txt");
+        }
+        assertEquals(8 * "hot0".length(), fileSystem.getOffHeapMemoryUsage());
+    }
+
+    @Test
+    public void testPinnedOffHeapResourcesIgnoreMemoryLimit() {
+        fileSystem.pinResources("offheap://assets/hot0.txt");
+        OffHeapResource pinned = fileSystem.getResource("offheap://assets/hot0.txt");
+        fileSystem.setOffHeapMemoryLimit(pinned.getSize());
+        OffHeapResource.Lease lease = fileSystem.acquireResource("offheap://assets/hot1.txt");
+        OffHeapResource other = lease.getResource();
+        fileSystem.getResource("offheap://assets/hot2.txt");
+        assertFalse(pinned.isReleased());
+        assertTrue(isCached("offheap://assets/hot0.txt"));
+        assertFalse(isCached("offheap://assets/hot1.txt"));
+
+        // the evicted resource stays readable until its lease is closed
+        assertFalse(other.isReleased());
+        assertEquals("hot1", read(lease));
+        lease.close();
+        assertTrue(other.isReleased());
+    }
+
+    @Test
+    public void testScanLeasesOffHeapResources() {
+        fileSystem.setMaximumCachedResources(2);
+        List<OffHeapResource.Lease> leases = fileSystem.acquireResources("offheap://assets/scan/");
+        assertEquals(SCAN_FILES, leases.size());
+        assertEquals(2, fileSystem.loadedResources.size());
+        long cachedSize = 0;
+        for (Object cached : fileSystem.loadedResources.values()) {
+            cachedSize += ((OffHeapResource) cached).getSize();
+        }
+        assertEquals(cachedSize, fileSystem.getOffHeapMemoryUsage());
+
+        // every lease is readable, the evicted resources are freed once their lease is closed
+        for (OffHeapResource.Lease lease : leases) {
+            assertTrue(read(lease).startsWith("s"));
+            lease.close();
+            assertEquals(!fileSystem.loadedResources.containsValue(lease.getResource()), lease.getResource().isReleased());
+        }
+    }
+
+    private static String read(OffHeapResource.Lease lease) {
+        ByteBuffer buffer = lease.getBuffer();
+        byte[] content = new byte[buffer.remaining()];
+        buffer.get(content);
+        return new String(content, StandardCharsets.UTF_8);
+    }
+}
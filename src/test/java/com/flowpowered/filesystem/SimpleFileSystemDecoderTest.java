@@ -0,0 +1,112 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flowpowered.filesystem.decoder.GzipResourceDecoder;
+import com.flowpowered.filesystem.resolver.FilePathResolver;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class SimpleFileSystemDecoderTest {
+    private static final byte[] TEXT = "packed text".getBytes(StandardCharsets.UTF_8);
+    private Path root;
+    private SimpleFileSystem fileSystem;
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("flow-filesystem-decoder");
+        Path assets = root.resolve("assets");
+        Files.createDirectories(assets);
+        Files.write(assets.resolve("packed.txt.gz"), gzip(TEXT));
+        // starts like gzip, but is not
+        Files.write(assets.resolve("magic.bin"), new byte[] {0x1f, (byte) 0x8b, 0x01, 0x02});
+        Files.write(assets.resolve("fake.txt.gz"), TEXT);
+
+        fileSystem = new SimpleFileSystem() {
+        };
+        fileSystem.addPathResolver(new FilePathResolver(root));
+        fileSystem.registerDecoder(new GzipResourceDecoder());
+        fileSystem.registerLoader(new ResourceLoader("bytes") {
+            @Override
+            public Object load(InputStream in) {
+                try {
+                    return IOUtils.toByteArray(in);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    @Test
+    public void testEncodedSiblingIsDecoded() {
+        byte[] resource = fileSystem.getResource("bytes://assets/packed.txt");
+        assertArrayEquals(TEXT, resource);
+    }
+
+    @Test
+    public void testEncodedPathIsNotDecoded() throws IOException {
+        byte[] resource = fileSystem.getResource("bytes://assets/packed.txt.gz");
+        assertArrayEquals(gzip(TEXT), resource);
+    }
+
+    @Test
+    public void testResourceStartingWithMagicIsNotDecoded() {
+        byte[] resource = fileSystem.getResource("bytes://assets/magic.bin");
+        assertArrayEquals(new byte[] {0x1f, (byte) 0x8b, 0x01, 0x02}, resource);
+    }
+
+    @Test
+    public void testSiblingWithoutMagicIsPassedAsIs() {
+        byte[] resource = fileSystem.getResource("bytes://assets/fake.txt");
+        assertArrayEquals(TEXT, resource);
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flowpowered.filesystem.resolver.FilePathResolver;
+import com.flowpowered.filesystem.resolver.JarFilePathResolver;
+import com.flowpowered.filesystem.resolver.ResourcePathResolver;
+import com.flowpowered.filesystem.resolver.ZipFilePathResolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers a {@link SimpleFileSystem} from many threads against file, zip and jar resolvers, checking that every resource is loaded once, that resolvers can be added and removed during loads, and
+ * that the off-heap memory accounting does not lose updates. Throughput and latency are logged at debug level. The amount of work can be raised with the
+ * {@code flow.filesystem.stress.iterations} system property, and the {@code flow.filesystem.stress.maxP99Micros} and {@code flow.filesystem.stress.minThroughput} (operations per second) properties make
+ * the tests fail when the measured latency or throughput is worse than the given bound.
+ */
+public class SimpleFileSystemStressTest {
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int ITERATIONS = Integer.getInteger("flow.filesystem.stress.iterations", 20);
+    private static final int ROUNDS = 10;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimpleFileSystemStressTest.class);
+    private static final long MAX_P99_MICROS = Long.getLong("flow.filesystem.stress.maxP99Micros", -1);
+    private static final long MIN_THROUGHPUT = Long.getLong("flow.filesystem.stress.minThroughput", -1);
+    private static final int FILES = 32;
+    private static final int DIRECTORY_FILES = 16;
+    private static final String[] HOSTS = {"files", "zipped", "jarred"};
+    private static Path root;
+    private final ConcurrentMap<String, AtomicInteger> loadCounts = new ConcurrentHashMap<>();
+    private final Queue<OffHeapResource> offHeapLoaded = new ConcurrentLinkedQueue<>();
+    private final List<Closeable> closeables = new ArrayList<>();
+    private SimpleFileSystem fileSystem;
+
+    @BeforeClass
+    public static void createFixtures() throws IOException {
+        root = Files.createTempDirectory("flow-filesystem-stress");
+        Files.createDirectories(root.resolve("files").resolve("dir"));
+        for (String path : getFixturePaths()) {
+            Files.write(root.resolve("files").resolve(path), getContent("files", path));
+        }
+        writeArchive(root.resolve("zipped.zip"), "zipped");
+        writeArchive(root.resolve("jarred.jar"), "jarred");
+    }
+
+    @AfterClass
+    public static void deleteFixtures() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private static List<String> getFixturePaths() {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            paths.add("r" + i + ".txt");
+        }
+        for (int i = 0; i < DIRECTORY_FILES; i++) {
+            paths.add("dir/d" + i + ".txt");
+        }
+        return paths;
+    }
+
+    private static byte[] getContent(String host, String path) {
+        return (host + "/" + path).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeArchive(Path archive, String host) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(archive))) {
+            out.putNextEntry(new ZipEntry("dir/"));
+            out.closeEntry();
+            for (String path : getFixturePaths()) {
+                out.putNextEntry(new ZipEntry(path));
+                out.write(getContent(host, path));
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static URI getUri(String scheme, String host, String path) {
+        return URI.create(scheme + "://" + host + "/" + path);
+    }
+
+    private static String getExpected(URI uri) {
+        return uri.getHost() + uri.getPath();
+    }
+
+    @Before
+    public void setUp() {
+        fileSystem = newFileSystem();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Closeable closeable : closeables) {
+            closeable.close();
+        }
+        closeables.clear();
+    }
+
+    private SimpleFileSystem newFileSystem() {
+        loadCounts.clear();
+        offHeapLoaded.clear();
+        ZipFilePathResolver zipResolver = new ZipFilePathResolver(root);
+        JarFilePathResolver jarResolver = new JarFilePathResolver(root);
+        closeables.add(zipResolver);
+        closeables.add(jarResolver);
+
+        SimpleFileSystem system = new SimpleFileSystem() {
+        };
+        system.addPathResolver(new FilePathResolver(root));
+        system.addPathResolver(zipResolver);
+        system.addPathResolver(jarResolver);
+        system.registerLoader(new ResourceLoader("stress") {
+            @Override
+            public Object load(InputStream in) {
+                try {
+                    String resource = IOUtils.toString(in, StandardCharsets.UTF_8.name());
+                    AtomicInteger count = new AtomicInteger();
+                    AtomicInteger previous = loadCounts.putIfAbsent(resource, count);
+                    (previous == null ? count : previous).incrementAndGet();
+                    return resource;
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        system.registerLoader(new ResourceLoader("offheap") {
+            @Override
+            public Object load(InputStream in) {
+                try {
+                    OffHeapResource resource = OffHeapResource.read(in);
+                    offHeapLoaded.add(resource);
+                    return resource;
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        return system;
+    }
+
+    private static void check(LatencyRecorder recorder) {
+        LOGGER.debug(recorder.report());
+        if (MAX_P99_MICROS >= 0) {
+            long p99 = recorder.getPercentileMicros(0.99);
+            assertTrue(recorder.getName() + " p99 latency of " + p99 + "us exceeds " + MAX_P99_MICROS + "us", p99 <= MAX_P99_MICROS);
+        }
+        if (MIN_THROUGHPUT >= 0) {
+            double throughput = recorder.getThroughput();
+            assertTrue(recorder.getName() + " throughput of " + Math.round(throughput) + " ops/s is below " + MIN_THROUGHPUT + " ops/s", throughput >= MIN_THROUGHPUT);
+        }
+    }
+
+    private interface Worker {
+        public void run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs the worker on the specified number of threads, released all at once, and rethrows the first failure.
+     */
+    private static void runConcurrently(int threads, final Worker worker) throws Exception {
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int thread = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        worker.run(thread);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertLoadedOnce(List<URI> uris) {
+        assertEquals("Number of loaded resources", uris.size(), loadCounts.size());
+        for (URI uri : uris) {
+            AtomicInteger count = loadCounts.get(getExpected(uri));
+            assertEquals("Number of loads of " + uri, 1, count == null ? 0 : count.get());
+        }
+    }
+
+    @Test
+    public void testGetResourceLoadsEachResourceOnce() throws Exception {
+        final List<URI> uris = new ArrayList<>();
+        for (String host : HOSTS) {
+            for (String path : getFixturePaths()) {
+                uris.add(getUri("stress", host, path));
+            }
+        }
+
+        final LatencyRecorder recorder = new LatencyRecorder("getResource", THREADS, ROUNDS * ITERATIONS * uris.size());
+        recorder.start();
+        for (int round = 0; round < ROUNDS; round++) {
+            fileSystem = newFileSystem();
+            runConcurrently(THREADS, new Worker() {
+                @Override
+                public void run(int thread) {
+                    List<URI> order = new ArrayList<>(uris);
+                    Random random = new Random(thread);
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        Collections.shuffle(order, random);
+                        for (URI uri : order) {
+                            long start = System.nanoTime();
+                            String resource = fileSystem.getResource(uri);
+                            recorder.record(thread, System.nanoTime() - start);
+                            assertEquals(getExpected(uri), resource);
+                        }
+                    }
+                }
+            });
+            assertLoadedOnce(uris);
+        }
+        recorder.stop();
+        check(recorder);
+    }
+
+    @Test
+    public void testConcurrentDirectoryLoads() throws Exception {
+        final LatencyRecorder recorder = new LatencyRecorder("getResources", THREADS, ITERATIONS * HOSTS.length);
+        recorder.start();
+        runConcurrently(THREADS, new Worker() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    for (String host : HOSTS) {
+                        long start = System.nanoTime();
+                        List<String> resources = fileSystem.getResources(getUri("stress", host, "dir/"));
+                        recorder.record(thread, System.nanoTime() - start);
+                        assertEquals(DIRECTORY_FILES, resources.size());
+                        Set<String> expected = new HashSet<>();
+                        for (int j = 0; j < DIRECTORY_FILES; j++) {
+                            expected.add(host + "/dir/d" + j + ".txt");
+                        }
+                        assertEquals(expected, new HashSet<>(resources));
+                    }
+                }
+            }
+        });
+        recorder.stop();
+        check(recorder);
+
+        List<URI> uris = new ArrayList<>();
+        for (String host : HOSTS) {
+            for (int i = 0; i < DIRECTORY_FILES; i++) {
+                uris.add(getUri("stress", host, "dir/d" + i + ".txt"));
+            }
+        }
+        assertLoadedOnce(uris);
+    }
+
+    private static Set<String> getExpectedDirectory(String host) {
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < DIRECTORY_FILES; i++) {
+            expected.add(host + "/dir/d" + i + ".txt");
+        }
+        return expected;
+    }
+
+    @Test
+    public void testUnmountDuringDirectoryLoad() {
+        final List<ResourcePathResolver> mounted = fileSystem.getPathResolvers();
+        fileSystem.registerLoader(new ResourceLoader("unmount") {
+            @Override
+            public Object load(InputStream in) {
+                // unmount everything while the first resource of the directory is loading
+                for (ResourcePathResolver resolver : mounted) {
+                    fileSystem.removePathResolver(resolver);
+                }
+                try {
+                    return IOUtils.toString(in, StandardCharsets.UTF_8.name());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        for (String host : HOSTS) {
+            for (ResourcePathResolver resolver : mounted) {
+                fileSystem.addPathResolver(resolver);
+            }
+            List<String> resources = fileSystem.getResources(getUri("unmount", host, "dir/"));
+            assertEquals(getExpectedDirectory(host), new HashSet<>(resources));
+            assertTrue(fileSystem.getPathResolvers().isEmpty());
+        }
+    }
+
+    @Test
+    public void testResolversChangeDuringLoads() throws Exception {
+        // the resolvers serving the resources are mounted and unmounted while the other threads are loading
+        final List<ResourcePathResolver> mounted = fileSystem.getPathResolvers();
+        for (ResourcePathResolver resolver : mounted) {
+            fileSystem.removePathResolver(resolver);
+        }
+        final AtomicInteger loading = new AtomicInteger(THREADS - 1);
+        final LatencyRecorder recorder = new LatencyRecorder("getResources", THREADS, ITERATIONS * HOSTS.length);
+        recorder.start();
+        runConcurrently(THREADS, new Worker() {
+            @Override
+            public void run(int thread) throws Exception {
+                if (thread == 0) {
+                    while (loading.get() > 0) {
+                        for (ResourcePathResolver resolver : mounted) {
+                            fileSystem.addPathResolver(resolver);
+                        }
+                        Thread.yield();
+                        for (ResourcePathResolver resolver : mounted) {
+                            fileSystem.removePathResolver(resolver);
+                        }
+                        Thread.yield();
+                    }
+                    return;
+                }
+                try {
+                    // retry until enough calls started while the resolvers were mounted
+                    int completed = 0;
+                    while (completed < ITERATIONS * HOSTS.length) {
+                        for (String host : HOSTS) {
+                            URI uri = getUri("stress", host, "dir/");
+                            List<String> resources;
+                            long start = System.nanoTime();
+                            try {
+                                resources = fileSystem.getResources(uri);
+                            } catch (IllegalArgumentException e) {
+                                // not mounted when the call started
+                                assertTrue(e.getMessage(), e.getMessage().startsWith("Could not resolve path"));
+                                continue;
+                            }
+                            recorder.record(thread, System.nanoTime() - start);
+                            // a call that started with the resolvers mounted loads the whole directory, even if they are unmounted meanwhile
+                            assertEquals(getExpectedDirectory(host), new HashSet<>(resources));
+                            completed++;
+                            for (int j = 0; j < DIRECTORY_FILES; j++) {
+                                fileSystem.unloadResource(getUri("stress", host, "dir/d" + j + ".txt"));
+                            }
+                        }
+                    }
+                } finally {
+                    loading.decrementAndGet();
+                }
+            }
+        });
+        recorder.stop();
+        check(recorder);
+    }
+
+    @Test
+    public void testConcurrentReloadsKeepOffHeapAccounting() throws Exception {
+        final List<URI> uris = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            uris.add(getUri("offheap", HOSTS[i % HOSTS.length], "r" + i + ".txt"));
+        }
+
+        runConcurrently(THREADS, new Worker() {
+            @Override
+            public void run(int thread) throws Exception {
+                Random random = new Random(thread);
+                for (int i = 0; i < ITERATIONS * 50; i++) {
+                    URI uri = uris.get(random.nextInt(uris.size()));
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            fileSystem.loadResource(uri);
+                            break;
+                        case 1:
+                            fileSystem.getResource(uri);
+                            break;
+                        default:
+                            fileSystem.unloadResource(uri);
+                            break;
+                    }
+                }
+            }
+        });
+
+        // every cached resource is accounted for, every replaced or unloaded one is released
+        long expectedUsage = 0;
+        Set<OffHeapResource> cached = new HashSet<>();
+        for (Map.Entry<URI, Object> entry : fileSystem.loadedResources.entrySet()) {
+            OffHeapResource resource = (OffHeapResource) entry.getValue();
+            assertFalse("Cached resource " + entry.getKey() + " was released", resource.isReleased());
+            expectedUsage += resource.getSize();
+            cached.add(resource);
+        }
+        assertEquals(expectedUsage, fileSystem.getOffHeapMemoryUsage());
+        for (OffHeapResource resource : offHeapLoaded) {
+            assertEquals(!cached.contains(resource), resource.isReleased());
+        }
+
+        for (URI uri : uris) {
+            fileSystem.unloadResource(uri);
+        }
+        assertEquals(0, fileSystem.getOffHeapMemoryUsage());
+        for (OffHeapResource resource : offHeapLoaded) {
+            assertTrue(resource.isReleased());
+        }
+    }
+
+    @Test
+    public void testOffHeapLimitUnderConcurrentLoads() throws Exception {
+        final List<URI> uris = new ArrayList<>();
+        for (String host : HOSTS) {
+            for (int i = 0; i < FILES; i++) {
+                uris.add(getUri("offheap", host, "r" + i + ".txt"));
+            }
+        }
+        OffHeapResource sample = OffHeapResource.read(new ByteArrayInputStream(getContent("files", "r0.txt")));
+        final long limit = 4 * sample.getSize();
+        sample.release();
+        fileSystem.setOffHeapMemoryLimit(limit);
+
+        runConcurrently(THREADS, new Worker() {
+            @Override
+            public void run(int thread) {
+                List<URI> order = new ArrayList<>(uris);
+                Collections.shuffle(order, new Random(thread));
+                for (URI uri : order) {
+                    OffHeapResource.Lease lease = fileSystem.acquireResource(uri);
+                    try {
+                        // keep reading while other threads evict the resource
+                        for (int i = 0; i < 16; i++) {
+                            ByteBuffer buffer = lease.getBuffer();
+                            byte[] content = new byte[buffer.remaining()];
+                            buffer.get(content);
+                            assertEquals(getExpected(uri), new String(content, StandardCharsets.UTF_8));
+                        }
+                    } finally {
+                        lease.close();
+                    }
+                }
+            }
+        });
+
+        assertTrue("Off-heap memory usage exceeds the limit", fileSystem.getOffHeapMemoryUsage() <= limit);
+        int live = 0;
+        for (OffHeapResource resource : offHeapLoaded) {
+            if (!resource.isReleased()) {
+                live++;
+            }
+        }
+        assertEquals(fileSystem.loadedResources.size(), live);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GzipResourceDecoderTest {
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        // compressible half
+        Arrays.fill(content, 0, size / 2, (byte) 'a');
+        return content;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Builds a gzip member by hand, with the optional header fields selected by the flags.
+     */
+    private static byte[] gzip(byte[] content, int flags) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[] {0x1f, (byte) 0x8b, Deflater.DEFLATED, (byte) flags, 1, 2, 3, 4, 0, 3});
+        if ((flags & FEXTRA) != 0) {
+            out.write(new byte[] {5, 0, 'e', 'x', 't', 'r', 'a'});
+        }
+        if ((flags & FNAME) != 0) {
+            out.write(new byte[] {'n', 'a', 'm', 'e', 0});
+        }
+        if ((flags & FCOMMENT) != 0) {
+            out.write(new byte[] {'c', 'o', 'm', 'm', 'e', 'n', 't', 0});
+        }
+        if ((flags & FHCRC) != 0) {
+            out.write(new byte[] {0x12, 0x34});
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(content);
+        deflater.finish();
+        byte[] chunk = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        writeUInt(out, crc.getValue());
+        writeUInt(out, content.length);
+        return out.toByteArray();
+    }
+
+    private static void writeUInt(ByteArrayOutputStream out, long value) {
+        for (int i = 0; i < 4; i++) {
+            out.write((int) (value >>> (8 * i)) & 0xff);
+        }
+    }
+
+    private static byte[] decode(ResourceDecoder decoder, byte[] encoded) throws IOException {
+        try (InputStream in = decoder.decode(new ByteArrayInputStream(encoded))) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    @Test
+    public void testDecodesGzipOutputStream() throws IOException {
+        GzipResourceDecoder decoder = new GzipResourceDecoder();
+        for (int size : new int[] {0, 1, 1000, 200 * 1024}) {
+            byte[] content = content(size);
+            assertArrayEquals("size " + size, content, decode(decoder, gzip(content)));
+        }
+    }
+
+    @Test
+    public void testSkipsOptionalHeaderFields() throws IOException {
+        GzipResourceDecoder decoder = new GzipResourceDecoder();
+        byte[] content = content(5000);
+        int[] flags = {0, FEXTRA, FNAME, FCOMMENT, FHCRC, FEXTRA | FNAME | FCOMMENT | FHCRC};
+        for (int flag : flags) {
+            assertArrayEquals("flags " + flag, content, decode(decoder, gzip(content, flag)));
+        }
+    }
+
+    @Test
+    public void testReadsTrailerSplitAcrossBuffers() throws IOException {
+        byte[] content = content(3000);
+        byte[] encoded = gzip(content);
+        // with every buffer size, the trailer ends up at a different offset of the last input chunk
+        for (int bufferSize = 1; bufferSize <= 64; bufferSize++) {
+            assertArrayEquals("buffer " + bufferSize, content, decode(new GzipResourceDecoder(1, bufferSize), encoded));
+        }
+    }
+
+    @Test
+    public void testReusesPooledInflaters() throws IOException {
+        GzipResourceDecoder decoder = new GzipResourceDecoder(1, 512);
+        byte[] first = content(10000);
+        byte[] second = content(777);
+        // interleaved streams take more inflaters than the pool keeps
+        InputStream a = decoder.decode(new ByteArrayInputStream(gzip(first)));
+        InputStream b = decoder.decode(new ByteArrayInputStream(gzip(second)));
+        assertArrayEquals(second, IOUtils.toByteArray(b));
+        assertArrayEquals(first, IOUtils.toByteArray(a));
+        b.close();
+        a.close();
+        // closing twice must not return the inflater to the pool twice
+        b.close();
+        for (int i = 0; i < 10; i++) {
+            byte[] content = content(100 * i);
+            assertArrayEquals(content, decode(decoder, gzip(content)));
+        }
+    }
+
+    @Test
+    public void testRejectsCorruptTrailer() throws IOException {
+        GzipResourceDecoder decoder = new GzipResourceDecoder();
+        byte[] encoded = gzip(content(2000));
+        for (int index : new int[] {encoded.length - 8, encoded.length - 1}) {
+            byte[] corrupt = encoded.clone();
+            corrupt[index] ^= 1;
+            try {
+                decode(decoder, corrupt);
+                fail("Corrupt " + (index < encoded.length - 4 ? "crc" : "size") + " was accepted");
+            } catch (ZipException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsTruncatedStream() throws IOException {
+        GzipResourceDecoder decoder = new GzipResourceDecoder();
+        byte[] encoded = gzip(content(2000));
+        try {
+            decode(decoder, Arrays.copyOf(encoded, encoded.length - 3));
+            fail("Truncated trailer was accepted");
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMatchesOnlyDeflateMembers() {
+        GzipResourceDecoder decoder = new GzipResourceDecoder();
+        assertTrue(decoder.matches(new byte[] {0x1f, (byte) 0x8b, 8}, 3));
+        assertFalse(decoder.matches(new byte[] {0x1f, (byte) 0x8b, 1}, 3));
+        assertFalse(decoder.matches(new byte[] {0x1f, (byte) 0x8b, 8}, 2));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem.resolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FilePathResolverTest {
+    private static final int SMALL_SIZE = 100 * 1024;
+    // above the read-ahead threshold
+    private static final int LARGE_SIZE = 3 * 1024 * 1024 + 17;
+    private final byte[] small = new byte[SMALL_SIZE];
+    private final byte[] large = new byte[LARGE_SIZE];
+    private Path root;
+    private FilePathResolver resolver;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("flow-filesystem-files");
+        Random random = new Random(7);
+        random.nextBytes(small);
+        random.nextBytes(large);
+        Files.createDirectories(root.resolve("host"));
+        Files.write(root.resolve("host").resolve("small.bin"), small);
+        Files.write(root.resolve("host").resolve("large.bin"), large);
+        resolver = new FilePathResolver(root);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private static byte[] range(byte[] content, long offset, long length) {
+        int start = (int) Math.min(offset, content.length);
+        return Arrays.copyOfRange(content, start, start + (int) Math.min(length, content.length - start));
+    }
+
+    @Test
+    public void testStreamsWholeFiles() throws IOException {
+        try (InputStream in = resolver.getStream("host", "/small.bin")) {
+            assertArrayEquals(small, IOUtils.toByteArray(in));
+        }
+        try (InputStream in = resolver.getStream("host", "/large.bin")) {
+            assertTrue(in instanceof ReadAheadInputStream);
+            assertArrayEquals(large, IOUtils.toByteArray(in));
+        }
+        assertNull(resolver.getStream("host", "/missing.bin"));
+    }
+
+    @Test
+    public void testStreamsRanges() throws IOException {
+        long[][] ranges = {{0, 1}, {5, 1000}, {SMALL_SIZE - 1, 10}, {SMALL_SIZE, 10}, {SMALL_SIZE + 1, 10}, {1, Long.MAX_VALUE}, {0, 0}};
+        for (long[] range : ranges) {
+            try (InputStream in = resolver.getStream("host", "/small.bin", range[0], range[1])) {
+                assertArrayEquals("small " + range[0] + "+" + range[1], range(small, range[0], range[1]), IOUtils.toByteArray(in));
+            }
+        }
+        // long enough for the read-ahead path
+        long[][] largeRanges = {{0, LARGE_SIZE}, {12345, 2 * 1024 * 1024}, {LARGE_SIZE - 1024 * 1024, Long.MAX_VALUE}, {3, 10}};
+        for (long[] range : largeRanges) {
+            try (InputStream in = resolver.getStream("host", "/large.bin", range[0], range[1])) {
+                assertArrayEquals("large " + range[0] + "+" + range[1], range(large, range[0], range[1]), IOUtils.toByteArray(in));
+            }
+        }
+    }
+
+    @Test
+    public void testChannelReadsAtPositions() throws IOException {
+        try (SeekableByteChannel channel = resolver.getChannel("host", "/large.bin")) {
+            assertEquals(LARGE_SIZE, channel.size());
+            for (long position : new long[] {LARGE_SIZE - 10, 0, 1024 * 1024 + 3}) {
+                channel.position(position);
+                ByteBuffer buffer = ByteBuffer.allocate(32);
+                while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                    // keep reading, a read may return less than asked
+                }
+                assertArrayEquals(range(large, position, 32), Arrays.copyOf(buffer.array(), buffer.position()));
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem.resolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ReadAheadInputStreamTest {
+    private static final int SIZE = 100000;
+    // small, so that the buffers are swapped many times
+    private static final int BUFFER_SIZE = 1000;
+    private final byte[] content = new byte[SIZE];
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(3).nextBytes(content);
+        file = Files.createTempFile("flow-filesystem-readahead", ".bin");
+        Files.write(file, content);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    private static byte[] readMixed(ReadAheadInputStream in) throws IOException {
+        // alternate single bytes and arrays of varying length, crossing buffer boundaries
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Random random = new Random(5);
+        byte[] chunk = new byte[3 * BUFFER_SIZE];
+        while (true) {
+            if (random.nextBoolean()) {
+                int b = in.read();
+                if (b == -1) {
+                    break;
+                }
+                out.write(b);
+            } else {
+                int read = in.read(chunk, 1, 1 + random.nextInt(chunk.length - 1));
+                if (read == -1) {
+                    break;
+                }
+                out.write(chunk, 1, read);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testReadsWholeFile() throws IOException {
+        try (ReadAheadInputStream in = new ReadAheadInputStream(file, BUFFER_SIZE)) {
+            assertFalse(in.markSupported());
+            assertArrayEquals(content, readMixed(in));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testReadsRanges() throws IOException {
+        long[][] ranges = {{0, 1}, {1, BUFFER_SIZE}, {BUFFER_SIZE - 1, 2}, {12345, 54321}, {SIZE - 5, 100}, {SIZE, 10}, {SIZE + 10, 10}, {7, Long.MAX_VALUE}, {0, 0}};
+        for (long[] range : ranges) {
+            try (ReadAheadInputStream in = new ReadAheadInputStream(file, BUFFER_SIZE, range[0], range[1])) {
+                int start = (int) Math.min(range[0], SIZE);
+                byte[] expected = Arrays.copyOfRange(content, start, start + (int) Math.min(range[1], SIZE - start));
+                assertArrayEquals(range[0] + "+" + range[1], expected, readMixed(in));
+            }
+        }
+    }
+}
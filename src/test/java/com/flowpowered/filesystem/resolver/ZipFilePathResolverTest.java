@@ -0,0 +1,172 @@
+/*
+ * This file is part of Flow Filesystem, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2013 Spout LLC <https://spout.org/>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.flowpowered.filesystem.resolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZipFilePathResolverTest {
+    private static final int ENTRY_SIZE = 200 * 1024;
+    private static final String[] ENTRIES = {"/stored.bin", "/deflated.bin"};
+    private final byte[] content = new byte[ENTRY_SIZE];
+    private Path root;
+    private ZipFilePathResolver resolver;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("flow-filesystem-zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(root.resolve("data.zip")))) {
+            out.putNextEntry(new ZipEntry("entry.txt"));
+            out.write("entry".getBytes("UTF-8"));
+            out.closeEntry();
+
+            new Random(42).nextBytes(content);
+            // compressible, so that deflated offsets differ from the stored ones
+            Arrays.fill(content, ENTRY_SIZE / 4, ENTRY_SIZE / 2, (byte) 7);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            ZipEntry stored = new ZipEntry("stored.bin");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(ENTRY_SIZE);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(content);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("deflated.bin"));
+            out.write(content);
+            out.closeEntry();
+        }
+        resolver = new ZipFilePathResolver(root);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        resolver.close();
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    @Test
+    public void testClosedResolverFindsNothing() throws IOException {
+        try (InputStream in = resolver.getStream("data", "/entry.txt")) {
+            assertNotNull(in);
+        }
+        assertTrue(resolver.existsInPath("data", "/entry.txt"));
+
+        resolver.close();
+        assertFalse(resolver.existsInPath("data", "/entry.txt"));
+        assertNull(resolver.getStream("data", "/entry.txt"));
+        assertNull(resolver.getChannel("data", "/entry.txt"));
+        assertNull(resolver.list("data", "/"));
+        try {
+            resolver.getPath("data", "/entry.txt");
+            fail("A closed resolver reopened its zip file");
+        } catch (ClosedFileSystemException e) {
+            // expected
+        }
+    }
+
+    private byte[] expected(long offset, int length) {
+        int start = (int) Math.min(offset, ENTRY_SIZE);
+        return Arrays.copyOfRange(content, start, (int) Math.min(ENTRY_SIZE, start + (long) length));
+    }
+
+    @Test
+    public void testStreamsWholeEntries() throws IOException {
+        for (String entry : ENTRIES) {
+            try (InputStream in = resolver.getStream("data", entry)) {
+                assertArrayEquals(entry, content, IOUtils.toByteArray(in));
+            }
+        }
+    }
+
+    @Test
+    public void testStreamsRanges() throws IOException {
+        long[][] ranges = {{0, 10}, {1, 1}, {12345, 54321}, {ENTRY_SIZE / 4 - 3, ENTRY_SIZE / 4}, {ENTRY_SIZE - 10, 100}, {ENTRY_SIZE, 10}, {ENTRY_SIZE + 10, 10}, {0, 0}};
+        for (String entry : ENTRIES) {
+            for (long[] range : ranges) {
+                try (InputStream in = resolver.getStream("data", entry, range[0], range[1])) {
+                    assertArrayEquals(entry + " " + range[0] + "+" + range[1], expected(range[0], (int) range[1]), IOUtils.toByteArray(in));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChannelSeeksBothWays() throws IOException {
+        long[] positions = {0, 100000, 5, ENTRY_SIZE / 4 + 1, 199990, 1, ENTRY_SIZE / 2 - 8, 0};
+        for (String entry : ENTRIES) {
+            try (SeekableByteChannel channel = resolver.getChannel("data", entry)) {
+                assertEquals(ENTRY_SIZE, channel.size());
+                for (long position : positions) {
+                    channel.position(position);
+                    ByteBuffer buffer = ByteBuffer.allocate(64);
+                    while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                        // keep reading, a read may return less than asked
+                    }
+                    assertEquals(position + buffer.position(), channel.position());
+                    assertArrayEquals(entry + " at " + position, expected(position, 64), Arrays.copyOf(buffer.array(), buffer.position()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChannelReadsNothingPastTheEnd() throws IOException {
+        for (String entry : ENTRIES) {
+            try (SeekableByteChannel channel = resolver.getChannel("data", entry)) {
+                channel.position(ENTRY_SIZE + 100);
+                assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+                // seeking back after that still works
+                channel.position(3);
+                ByteBuffer buffer = ByteBuffer.allocate(1);
+                assertEquals(1, channel.read(buffer));
+                assertEquals(content[3], buffer.get(0));
+            }
+        }
+    }
+}